@@ -0,0 +1,443 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Converts every schedule in a directory into its own calendar without any user interface.
+ * <br>Usage: {@code --batch <input directory> <output directory> [--threads N] [--cache-dir DIR] [--cache-dir-bytes 1073741824] [--incremental]}
+ * <br>The schedules may be XLSX workbooks or CSV exports of the same columns, told apart by their contents with {@link ScheduleReader}.
+ * A CSV schedule has no sheets, so the sheet options read it as is.
+ * <br>With {@code --cache-dir}, schedules that were converted by a previous run with the same term dates are copied from the {@link ConversionCache} instead of converted again.
+ * <br>With {@code --incremental}, each calendar is written over the calendar already in the output directory with {@link IncrementalCalendar},
+ * so the events that did not change keep their revision. The cache is not used, since it holds calendars without any previous revision.
+ * <br>With {@code --sheets all} or {@code --sheets <name,name>}, the selected sheets of each workbook are read in parallel instead of only the first sheet,
+ * and their courses are merged into one calendar. With {@code --per-sheet}, each sheet gets its own calendar, named after the workbook and the sheet.
+ * Neither uses the cache, since its key does not include the sheets.
+ * <br>With {@code --merge-sections}, the rows of a section at the same time and place are merged into one event by {@link SectionMerger}.
+ * <br>With {@code --metrics}, every stage of the conversions is measured with {@link ConversionMetrics} and printed at the end.
+ * <br>With {@code --terms}, the dates of the terms are taken from a {@link TermRegistry} of several academic years.
+ * Otherwise they are taken from the dates saved by {@link TermDateGetter#getTerms()}. The batch never asks for them on the console.
+ * <br>With {@code --zone}, the times of the courses are in that zone instead of {@link ICSTimeZone#DEFAULT_ZONE}. With {@code --campus-zone PREFIX=ZONE},
+ * once per campus, the courses whose location starts with the prefix are in the zone of their campus.
+ */
+public class BatchConverter {
+	/**
+	 * How many files may wait for a worker per worker before the submitting thread has to convert one itself
+	 */
+	private static final int QUEUED_FILES_PER_THREAD = 2;
+	private static final long DEFAULT_CACHE_DIRECTORY_BYTES = 1024L * 1024 * 1024;
+	/**
+	 * Every schedule of a batch is different, so only a few calendars are kept in memory
+	 */
+	private static final long CACHE_MEMORY_BYTES = 16L * 1024 * 1024;
+
+	private final int parallelism;
+	private final ConversionCache conversionCache;
+	private final CalendarEngine engine;
+	private boolean incremental;
+	private Predicate<String> sheetFilter;
+	private boolean perSheet;
+	private boolean mergeSections;
+	private final AtomicInteger convertedFiles = new AtomicInteger();
+	private final AtomicInteger failedFiles = new AtomicInteger();
+	private final AtomicLong convertedRows = new AtomicLong();
+	private final AtomicLong addedEvents = new AtomicLong();
+	private final AtomicLong changedEvents = new AtomicLong();
+	private final AtomicLong removedEvents = new AtomicLong();
+	private final AtomicLong savedEvents = new AtomicLong();
+
+	/**
+	 * @param parallelism The number of files to convert at once
+	 */
+	public BatchConverter(int parallelism) {
+		this(parallelism, null, CalendarEntryGenerator.getEngine());
+	}
+
+	/**
+	 * @param parallelism     The number of files to convert at once
+	 * @param conversionCache Where to keep the converted calendars, or null to convert every file
+	 * @param engine          Generates every calendar. Its dates of the terms and its time zones are part of the cache key
+	 */
+	public BatchConverter(int parallelism, ConversionCache conversionCache, CalendarEngine engine) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("The parallelism must be at least 1, but was " + parallelism);
+		}
+		this.parallelism = parallelism;
+		this.conversionCache = conversionCache;
+		this.engine = engine;
+	}
+
+	/**
+	 * Runs the batch mode from the command line arguments
+	 *
+	 * @param args The command line arguments, starting with {@code --batch}
+	 * @return The exit code. 0 if every file was converted, 1 if some files failed, and 2 if the arguments are invalid
+	 */
+	public static int run(String[] args) {
+		if (args.length < 3) {
+			System.err.println("Usage: --batch <input directory> <output directory> [--threads N] [--cache-dir DIR] [--cache-dir-bytes N] [--incremental] [--sheets all|<names>] [--per-sheet] [--terms FILE] [--zone ZONE] [--campus-zone PREFIX=ZONE] [--merge-sections] [--metrics]");
+			return 2;
+		}
+		File inputDirectory = new File(args[1]);
+		File outputDirectory = new File(args[2]);
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		Path cacheDirectory = null;
+		long cacheDirectoryBytes = DEFAULT_CACHE_DIRECTORY_BYTES;
+		boolean incremental = false;
+		Predicate<String> sheetFilter = null;
+		boolean perSheet = false;
+		boolean mergeSections = false;
+		Path termsFile = null;
+		ZoneId zone = ICSTimeZone.DEFAULT_ZONE;
+		Map<String, ZoneId> campusZones = new LinkedHashMap<>();
+		for (int i = 3; i < args.length; i++) {
+			if (args[i].equals("--threads") && i + 1 < args.length) {
+				parallelism = BatchConverter.parseThreads(args[++i]);
+				if (parallelism < 1) {
+					return 2;
+				}
+			} else if (args[i].equals("--cache-dir") && i + 1 < args.length) {
+				cacheDirectory = Path.of(args[++i]);
+			} else if (args[i].equals("--cache-dir-bytes") && i + 1 < args.length) {
+				try {
+					cacheDirectoryBytes = Long.parseLong(args[++i]);
+				} catch (NumberFormatException e) {
+					cacheDirectoryBytes = -1;
+				}
+				if (cacheDirectoryBytes < 0) {
+					System.err.println("The size of the cache directory must be a number of bytes, not " + args[i]);
+					return 2;
+				}
+			} else if (args[i].equals("--incremental")) {
+				incremental = true;
+			} else if (args[i].equals("--sheets") && i + 1 < args.length) {
+				String sheets = args[++i];
+				sheetFilter = sheets.equals("all") ? sheetName -> true : Set.of(sheets.split(","))::contains;
+			} else if (args[i].equals("--per-sheet")) {
+				perSheet = true;
+			} else if (args[i].equals("--merge-sections")) {
+				mergeSections = true;
+			} else if (args[i].equals("--metrics")) {
+				ConversionMetrics.setMeasuring(true);
+				ConversionMetrics.registerMBean();
+			} else if (args[i].equals("--terms") && i + 1 < args.length) {
+				termsFile = Path.of(args[++i]);
+			} else if (args[i].equals("--zone") && i + 1 < args.length) {
+				zone = ICSTimeZone.parseZone(args[++i]);
+				if (zone == null) {
+					return 2;
+				}
+			} else if (args[i].equals("--campus-zone") && i + 1 < args.length) {
+				if (!ICSTimeZone.putCampusZone(campusZones, args[++i])) {
+					return 2;
+				}
+			} else {
+				System.err.println("Unknown argument: " + args[i]);
+				return 2;
+			}
+		}
+		if (!inputDirectory.isDirectory()) {
+			System.err.println(inputDirectory + " is not a directory.");
+			return 2;
+		}
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			System.err.println("Could not create the output directory " + outputDirectory + ".");
+			return 2;
+		}
+
+		// Get the terms, without ever waiting for the console
+		TermRegistry termRegistry;
+		try {
+			termRegistry = termsFile != null ? TermRegistry.read(termsFile) : TermRegistry.of(TermDateGetter.readTerms());
+		} catch (IOException e) {
+			System.err.println("Could not read the term dates: " + e);
+			return 2;
+		}
+
+		ConversionCache conversionCache = null;
+		if (cacheDirectory != null) {
+			try {
+				conversionCache = new ConversionCache(CACHE_MEMORY_BYTES, cacheDirectory, cacheDirectoryBytes);
+			} catch (IOException e) {
+				System.err.println("Could not open the cache directory " + cacheDirectory + ": " + e);
+				return 2;
+			}
+		}
+
+		BatchConverter batchConverter = new BatchConverter(parallelism, conversionCache,
+				new CalendarEngine(termRegistry).withZone(zone).withCampusZones(campusZones));
+		batchConverter.setIncremental(incremental);
+		batchConverter.setMergeSections(mergeSections);
+		if (sheetFilter != null || perSheet) {
+			batchConverter.setSheets(sheetFilter != null ? sheetFilter : sheetName -> true, perSheet);
+		}
+		batchConverter.convertDirectory(inputDirectory, outputDirectory);
+		return batchConverter.getFailedFiles() == 0 ? 0 : 1;
+	}
+
+	/**
+	 * @param threads The number of threads from the command line
+	 * @return The number of threads, or 0 if it is not a positive number, which is reported
+	 */
+	static int parseThreads(String threads) {
+		try {
+			int parsedThreads = Integer.parseInt(threads);
+			if (parsedThreads >= 1) {
+				return parsedThreads;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below, the same as a number that is too small
+		}
+		System.err.println("The number of threads must be a positive number, not " + threads);
+		return 0;
+	}
+
+	/**
+	 * Converts every XLSX and CSV file in {@code inputDirectory} into an ICS file of the same name in {@code outputDirectory}.
+	 * <br>A file that fails to convert is reported and skipped, and the rest of the files are still converted.
+	 *
+	 * @param inputDirectory  The directory containing the schedules
+	 * @param outputDirectory The directory to save the calendars in
+	 */
+	public void convertDirectory(File inputDirectory, File outputDirectory) {
+		File[] inputFiles = inputDirectory.listFiles((directory, name) -> BatchConverter.isSchedule(name));
+		if (inputFiles == null) {
+			System.err.println("Could not list the files in " + inputDirectory + ".");
+			return;
+		}
+		Arrays.sort(inputFiles);
+		System.out.println("Converting " + inputFiles.length + " files with " + this.parallelism + " threads...");
+
+		// The queue is bounded so that the files waiting to be converted do not pile up.
+		// Once it is full, the submitting thread converts the file itself, which slows down submission.
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(this.parallelism * QUEUED_FILES_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
+		long startTime = System.nanoTime();
+		for (File inputFile : inputFiles) {
+			File outputFile = new File(outputDirectory, BatchConverter.getCalendarFileName(inputFile));
+			executor.execute(() -> this.convertFile(inputFile, outputFile));
+		}
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				System.out.println("Still converting..." + this.convertedFiles.get() + " of " + inputFiles.length + " files done.");
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		this.printSummary(System.nanoTime() - startTime);
+	}
+
+	/**
+	 * Converts a single schedule. Any error is reported and counted as a failure instead of being thrown.
+	 *
+	 * @param inputFile  The schedule to convert
+	 * @param outputFile Where to save the calendar
+	 */
+	private void convertFile(File inputFile, File outputFile) {
+		try {
+			if (this.sheetFilter != null && ScheduleReader.isWorkbook(inputFile)) {
+				// The sheets of one workbook are read on the common pool, while the files are converted on the batch threads
+				Map<String, List<Course>> coursesBySheet = XLSXReader.parseXLSXSheets(inputFile, this.sheetFilter, ForkJoinPool.commonPool());
+				if (this.perSheet) {
+					for (Map.Entry<String, List<Course>> sheet : coursesBySheet.entrySet()) {
+						this.saveCourses(sheet.getValue(), new File(outputFile.getParentFile(), BatchConverter.getSheetCalendarFileName(outputFile, sheet.getKey())));
+					}
+				} else {
+					this.saveCourses(XLSXReader.mergeSheets(coursesBySheet), outputFile);
+				}
+			} else if (this.conversionCache != null && !this.incremental) {
+				byte[] schedule = Files.readAllBytes(inputFile.toPath());
+				byte[] calendar = this.conversionCache.getOrConvert(schedule, this.getCacheKey(), this::convertSchedule);
+				ICSWriter.saveCalendar(calendar, outputFile.toPath());
+			} else {
+				// A catalog is held by column, and each course is only viewed while its event is written
+				CourseTable courseTable = new CourseTable();
+				ScheduleReader.parseFile(inputFile, courseTable);
+				this.saveCourses(courseTable.asList(), outputFile);
+			}
+			this.convertedFiles.incrementAndGet();
+		} catch (Exception e) {
+			// The calendar is saved atomically, so a failure never leaves an incomplete calendar behind
+			this.failedFiles.incrementAndGet();
+			ConversionMetrics.recordError(e);
+			System.err.println("Failed to convert " + inputFile.getName() + ": " + e);
+		}
+	}
+
+	/**
+	 * Saves the calendar of the courses, over the previous calendar in incremental mode
+	 *
+	 * @param rows       The courses as read, one per row. The rows of a section are merged into one event first with {@code --merge-sections}
+	 * @param outputFile Where to save the calendar
+	 * @throws IOException Thrown if the calendar could not be saved
+	 */
+	private void saveCourses(List<Course> rows, File outputFile) throws IOException {
+		List<Course> courses = this.mergeSections(rows);
+		if (this.incremental) {
+			IncrementalCalendar incrementalCalendar = IncrementalCalendar.readPrevious(outputFile.toPath());
+			incrementalCalendar.save(courses, outputFile.toPath(), this.engine);
+			this.addedEvents.addAndGet(incrementalCalendar.getAdded());
+			this.changedEvents.addAndGet(incrementalCalendar.getChanged());
+			this.removedEvents.addAndGet(incrementalCalendar.getRemoved());
+		} else {
+			this.engine.saveCalendar(courses, outputFile.toPath());
+		}
+		this.convertedRows.addAndGet(rows.size());
+	}
+
+	/**
+	 * Converts a schedule that is not in the cache
+	 *
+	 * @param schedule The bytes of the schedule
+	 * @return The bytes of the calendar
+	 * @throws Exception Thrown if the schedule could not be converted
+	 */
+	private byte[] convertSchedule(byte[] schedule) throws Exception {
+		CourseTable courseTable = new CourseTable();
+		ScheduleReader.parseBytes(schedule, courseTable);
+		this.convertedRows.addAndGet(courseTable.size());
+		return this.engine.toByteArray(this.mergeSections(courseTable.asList()));
+	}
+
+	/**
+	 * @param rows The courses of a schedule, one per row
+	 * @return The courses with the rows of each section at the same time and place merged if {@code --merge-sections} was given, otherwise the rows
+	 */
+	private List<Course> mergeSections(List<Course> rows) {
+		if (!this.mergeSections) {
+			return rows;
+		}
+		SectionMerger sectionMerger = new SectionMerger();
+		List<Course> courses = sectionMerger.merge(rows);
+		this.savedEvents.addAndGet(sectionMerger.getSavedEvents());
+		return courses;
+	}
+
+	/**
+	 * @return The key of the calendars in the cache, which tells apart the calendars whose sections were merged
+	 */
+	private int[] getCacheKey() {
+		int[] cacheKey = this.engine.getCacheKey();
+		if (!this.mergeSections) {
+			return cacheKey;
+		}
+		// Dates, lengths, and characters are never negative, so the marker cannot be part of the key of any engine
+		int[] mergedKey = Arrays.copyOf(cacheKey, cacheKey.length + 1);
+		mergedKey[cacheKey.length] = -1;
+		return mergedKey;
+	}
+
+	/**
+	 * @param name The name of a file in the input directory
+	 * @return True if the file is a schedule to convert. Its format is found from its contents when it is read
+	 */
+	private static boolean isSchedule(String name) {
+		String lowerCaseName = name.toLowerCase();
+		return lowerCaseName.endsWith(".xlsx") || lowerCaseName.endsWith(".csv");
+	}
+
+	/**
+	 * @param inputFile The schedule
+	 * @return The name of the schedule with the extension replaced by {@code .ics}
+	 */
+	private static String getCalendarFileName(File inputFile) {
+		String name = inputFile.getName();
+		int extensionIndex = name.lastIndexOf('.');
+		return (extensionIndex > 0 ? name.substring(0, extensionIndex) : name) + ".ics";
+	}
+
+	/**
+	 * @param outputFile The calendar of the whole workbook
+	 * @param sheetName  The name of the sheet
+	 * @return The name of the calendar with the name of the sheet added before the extension, with any character unsafe in a file name replaced by {@code _}
+	 */
+	private static String getSheetCalendarFileName(File outputFile, String sheetName) {
+		String name = outputFile.getName();
+		String baseName = name.substring(0, name.length() - ".ics".length());
+		return baseName + "-" + sheetName.replaceAll("[^A-Za-z0-9._-]", "_") + ".ics";
+	}
+
+	/**
+	 * @param elapsedNanos How long the conversion took
+	 */
+	private void printSummary(long elapsedNanos) {
+		double seconds = elapsedNanos / 1e9;
+		int files = this.convertedFiles.get();
+		long rows = this.convertedRows.get();
+		System.out.printf("Converted %d files (%d rows) in %.2f s: %.1f files/s, %.1f rows/s, %d failures%n",
+				files, rows, seconds, files / seconds, rows / seconds, this.failedFiles.get());
+		if (this.mergeSections) {
+			System.out.println("Merging sections saved " + this.savedEvents.get() + " events");
+		}
+		if (this.incremental) {
+			System.out.printf("Events: %d added, %d changed, %d removed%n", this.addedEvents.get(), this.changedEvents.get(), this.removedEvents.get());
+		} else if (this.conversionCache != null) {
+			System.out.println("Cache: " + this.conversionCache);
+		}
+		if (ConversionMetrics.isMeasuring()) {
+			System.out.print(ConversionMetrics.getInstance());
+		}
+	}
+
+	/**
+	 * @param incremental True to write each calendar over the calendar already in the output directory, keeping the revision of the unchanged events
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * @param mergeSections True to merge the rows of each section at the same time and place into one event with {@link SectionMerger}
+	 */
+	public void setMergeSections(boolean mergeSections) {
+		this.mergeSections = mergeSections;
+	}
+
+	/**
+	 * Reads the selected sheets of each workbook in parallel instead of only the first sheet
+	 *
+	 * @param sheetFilter Selects the sheets to read by name
+	 * @param perSheet    True to save a calendar for each sheet, false to merge the sheets into one calendar
+	 */
+	public void setSheets(Predicate<String> sheetFilter, boolean perSheet) {
+		this.sheetFilter = sheetFilter;
+		this.perSheet = perSheet;
+	}
+
+	/**
+	 * @return The number of files that have been converted
+	 */
+	public int getConvertedFiles() {
+		return convertedFiles.get();
+	}
+
+	/**
+	 * @return The number of files that failed to convert
+	 */
+	public int getFailedFiles() {
+		return failedFiles.get();
+	}
+
+	/**
+	 * @return The number of courses in all the converted files, not counting the files found in the cache
+	 */
+	public long getConvertedRows() {
+		return convertedRows.get();
+	}
+}
@@ -0,0 +1,394 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Reads a schedule that was exported as CSV, without POI or aspose-cells.
+ * <br>The file is mapped into memory and parsed in one pass over its bytes. Fields may be quoted, in which case they can hold commas,
+ * line breaks, and doubled quotes. The header row names the columns, so they can be in any order and the file can have other columns,
+ * which are skipped without being decoded.
+ * <br>The file is read as UTF-8, with or without a byte order mark.
+ */
+public class CSVReader {
+	/**
+	 * The names of the columns in the header, in the order of {@link XLSXReader#courseDataFactory(CourseBuilder, int, String)}
+	 */
+	private static final String[] COLUMN_NAMES = {"term", "course", "format", "meetings", "location", "instructor", "delivery"};
+	private static final byte[] BYTE_ORDER_MARK = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+	private final ByteBuffer buffer;
+	private final CourseTable courseTable;
+	private final Consumer<Course> consumer;
+	/**
+	 * Holds the bytes of a quoted field once its quotes are removed, and the bytes of any field of a mapped file
+	 */
+	private byte[] fieldBytes = new byte[256];
+	private int position;
+	/**
+	 * The number of the record being read, counting the header as 1
+	 */
+	private int recordNumber;
+	private int rowCount;
+
+	private CSVReader(ByteBuffer buffer, CourseTable courseTable, Consumer<Course> consumer) {
+		this.buffer = buffer;
+		this.courseTable = courseTable;
+		this.consumer = consumer;
+	}
+
+	/**
+	 * Adds each row of the file to {@code courseTable}, without creating a {@link Course}
+	 *
+	 * @param file        The CSV schedule
+	 * @param courseTable Receives each row in the order that they appear in the file
+	 * @return The number of rows that were read
+	 * @throws IOException Thrown if the file could not be mapped
+	 */
+	public static int parseCSVFile(File file, CourseTable courseTable) throws IOException {
+		return CSVReader.parseMapped(file, courseTable, null);
+	}
+
+	/**
+	 * Turns each row of the file into a {@link Course}
+	 *
+	 * @param file     The CSV schedule
+	 * @param consumer Receives each course in the order that they appear in the file
+	 * @return The number of courses that were read
+	 * @throws IOException Thrown if the file could not be mapped
+	 */
+	public static int parseCSVFile(File file, Consumer<Course> consumer) throws IOException {
+		return CSVReader.parseMapped(file, null, consumer);
+	}
+
+	/**
+	 * Same as {@link CSVReader#parseCSVFile(File, CourseTable)}, for a schedule that is already in memory, i.e. an upload
+	 *
+	 * @param bytes       The CSV schedule
+	 * @param courseTable Receives each row in the order that they appear in the file
+	 * @return The number of rows that were read
+	 */
+	public static int parseCSVBytes(byte[] bytes, CourseTable courseTable) {
+		return new CSVReader(ByteBuffer.wrap(bytes), courseTable, null).parse();
+	}
+
+	/**
+	 * Same as {@link CSVReader#parseCSVFile(File, Consumer)}, for a schedule that is already in memory, i.e. an upload
+	 *
+	 * @param bytes    The CSV schedule
+	 * @param consumer Receives each course in the order that they appear in the file
+	 * @return The number of courses that were read
+	 */
+	public static int parseCSVBytes(byte[] bytes, Consumer<Course> consumer) {
+		return new CSVReader(ByteBuffer.wrap(bytes), null, consumer).parse();
+	}
+
+	/**
+	 * @param file        The CSV schedule
+	 * @param courseTable Receives each row, or null to send each course to {@code consumer}
+	 * @param consumer    Receives each course, or null to add each row to {@code courseTable}
+	 * @return The number of rows that were read
+	 * @throws IOException Thrown if the file could not be mapped
+	 */
+	private static int parseMapped(File file, CourseTable courseTable, Consumer<Course> consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(file + " is too large to be read as a schedule");
+			}
+			// The mapping stays valid once the channel is closed, and is released with the buffer
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			return new CSVReader(buffer, courseTable, consumer).parse();
+		}
+	}
+
+	/**
+	 * Reads the header, then every row after it
+	 *
+	 * @return The number of rows that were read
+	 */
+	private int parse() {
+		long startNanos = ConversionMetrics.startStage();
+		if (CSVReader.startsWith(this.buffer, BYTE_ORDER_MARK)) {
+			this.position = BYTE_ORDER_MARK.length;
+		}
+
+		// Find the position of each course column from the names in the header
+		List<String> header = new ArrayList<>();
+		this.recordNumber = 1;
+		this.readRecord(null, null, header);
+		int[] courseColumns = CSVReader.mapColumns(header);
+
+		String[] cells = new String[COLUMN_NAMES.length];
+		while (this.position < this.buffer.limit()) {
+			this.recordNumber++;
+			if (this.skipBlankLine()) {
+				continue;
+			}
+			Arrays.fill(cells, null);
+			this.readRecord(courseColumns, cells, null);
+			this.addRow(cells, CSVReader.isComplete(cells));
+		}
+		ConversionMetrics.endStage(ConversionStage.PARSE, startNanos, this.rowCount);
+		return this.rowCount;
+	}
+
+	/**
+	 * @param cells    The values of the course columns of the row
+	 * @param complete True if the row has a value for every course column
+	 */
+	private void addRow(String[] cells, boolean complete) {
+		if (!complete) {
+			System.err.println("Row " + this.recordNumber + " is missing course data and was skipped.");
+			return;
+		}
+		long startNanos = ConversionMetrics.startStage();
+		if (this.courseTable != null) {
+			this.courseTable.addRow(cells);
+			ConversionMetrics.endStage(ConversionStage.BUILD, startNanos, 1);
+		} else {
+			CourseBuilder courseBuilder = new CourseBuilder();
+			for (int i = 0; i < cells.length; i++) {
+				XLSXReader.courseDataFactory(courseBuilder, i, cells[i]);
+			}
+			Course course = courseBuilder.toCourse();
+			ConversionMetrics.endStage(ConversionStage.BUILD, startNanos, 1);
+			this.consumer.accept(course);
+		}
+		this.rowCount++;
+	}
+
+	/**
+	 * Reads the fields of one record, up to and including its line break.
+	 * <br>Only the fields of the course columns are decoded: every other field is skipped over.
+	 *
+	 * @param courseColumns The course column of each field, or -1 for a field that is not needed. Null to read every field into {@code fields}
+	 * @param cells         Receives the course columns of the record, with null for an empty field, if {@code courseColumns} is not null
+	 * @param fields        Receives every field, if {@code courseColumns} is null
+	 */
+	private void readRecord(int[] courseColumns, String[] cells, List<String> fields) {
+		int limit = this.buffer.limit();
+		int fieldIndex = 0;
+		while (true) {
+			boolean needed = courseColumns == null || (fieldIndex < courseColumns.length && courseColumns[fieldIndex] >= 0);
+			String value = this.readField(needed);
+			if (courseColumns == null) {
+				fields.add(value);
+			} else if (needed) {
+				// An empty field is absent, as a missing cell of a workbook is, so the row is skipped the same way by both readers
+				cells[courseColumns[fieldIndex]] = value.isEmpty() ? null : value;
+			}
+			fieldIndex++;
+
+			if (this.position >= limit) {
+				return;
+			}
+			byte delimiter = this.buffer.get(this.position++);
+			if (delimiter == '\r') {
+				if (this.position < limit && this.buffer.get(this.position) == '\n') {
+					this.position++;
+				}
+				return;
+			} else if (delimiter == '\n') {
+				return;
+			}
+			// Otherwise it is a comma, and another field follows
+		}
+	}
+
+	/**
+	 * @return True if the record at the position is an empty line, which is then skipped
+	 */
+	private boolean skipBlankLine() {
+		byte b = this.buffer.get(this.position);
+		if (b == '\n') {
+			this.position++;
+			return true;
+		} else if (b == '\r') {
+			this.position++;
+			if (this.position < this.buffer.limit() && this.buffer.get(this.position) == '\n') {
+				this.position++;
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Reads one field, leaving the position at the comma or line break after it
+	 *
+	 * @param needed True to decode the field, false to only skip over it
+	 * @return The value of the field, or null if it is not needed
+	 */
+	private String readField(boolean needed) {
+		ByteBuffer buffer = this.buffer;
+		int limit = buffer.limit();
+		int start = this.position;
+		int end = start;
+		if (end >= limit || buffer.get(end) != '"') {
+			while (end < limit && !CSVReader.isDelimiter(buffer.get(end))) {
+				end++;
+			}
+			this.position = end;
+			return needed ? this.decode(start, end) : null;
+		}
+
+		// A quoted field: copy the runs between the quotes, turning each doubled quote into one
+		int length = 0;
+		int runStart = start + 1;
+		while (true) {
+			int quote = runStart;
+			while (quote < limit && buffer.get(quote) != '"') {
+				quote++;
+			}
+			if (quote >= limit) {
+				throw new IllegalArgumentException("Row " + this.recordNumber + " has a quoted field that is never closed");
+			}
+			if (needed) {
+				length = this.copy(runStart, quote, length);
+			}
+			if (quote + 1 < limit && buffer.get(quote + 1) == '"') {
+				if (needed) {
+					length = this.append((byte) '"', length);
+				}
+				runStart = quote + 2;
+			} else {
+				end = quote + 1;
+				break;
+			}
+		}
+		// Anything between the closing quote and the delimiter is kept as is, as spreadsheets do
+		int trailingStart = end;
+		while (end < limit && !CSVReader.isDelimiter(buffer.get(end))) {
+			end++;
+		}
+		if (needed) {
+			length = this.copy(trailingStart, end, length);
+		}
+		this.position = end;
+		return needed ? new String(this.fieldBytes, 0, length, StandardCharsets.UTF_8) : null;
+	}
+
+	/**
+	 * @param start The position of the first byte of the field
+	 * @param end   The position after the last byte of the field
+	 * @return The field as text
+	 */
+	private String decode(int start, int end) {
+		if (this.buffer.hasArray()) {
+			return new String(this.buffer.array(), this.buffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+		}
+		int length = this.copy(start, end, 0);
+		return new String(this.fieldBytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param start  The position of the first byte to copy
+	 * @param end    The position after the last byte to copy
+	 * @param length The number of bytes already in {@link CSVReader#fieldBytes}
+	 * @return The number of bytes in {@link CSVReader#fieldBytes} after the copy
+	 */
+	private int copy(int start, int end, int length) {
+		int count = end - start;
+		this.ensureCapacity(length + count);
+		this.buffer.get(start, this.fieldBytes, length, count);
+		return length + count;
+	}
+
+	/**
+	 * @param b      The byte to add to {@link CSVReader#fieldBytes}
+	 * @param length The number of bytes already in {@link CSVReader#fieldBytes}
+	 * @return The number of bytes in {@link CSVReader#fieldBytes} after the byte
+	 */
+	private int append(byte b, int length) {
+		this.ensureCapacity(length + 1);
+		this.fieldBytes[length] = b;
+		return length + 1;
+	}
+
+	/**
+	 * @param capacity The number of bytes that {@link CSVReader#fieldBytes} must be able to hold
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > this.fieldBytes.length) {
+			this.fieldBytes = Arrays.copyOf(this.fieldBytes, Math.max(capacity, this.fieldBytes.length * 2));
+		}
+	}
+
+	/**
+	 * @param header The names of the columns
+	 * @return The course column of each column of the file, or -1 for a column that does not hold course data
+	 * @throws IllegalArgumentException Thrown if a course column is not in the header
+	 */
+	private static int[] mapColumns(List<String> header) {
+		int[] courseColumns = new int[header.size()];
+		boolean[] found = new boolean[COLUMN_NAMES.length];
+		for (int i = 0; i < courseColumns.length; i++) {
+			courseColumns[i] = -1;
+			String name = header.get(i).trim().toLowerCase(Locale.ROOT);
+			for (int column = 0; column < COLUMN_NAMES.length; column++) {
+				// The first column of a name is used if the name is repeated
+				if (!found[column] && COLUMN_NAMES[column].equals(name)) {
+					courseColumns[i] = column;
+					found[column] = true;
+					break;
+				}
+			}
+		}
+		List<String> missing = new ArrayList<>();
+		for (int column = 0; column < COLUMN_NAMES.length; column++) {
+			if (!found[column]) {
+				missing.add(COLUMN_NAMES[column]);
+			}
+		}
+		if (!missing.isEmpty()) {
+			throw new IllegalArgumentException("The header of the CSV file is missing the columns " + missing);
+		}
+		return courseColumns;
+	}
+
+	/**
+	 * @param cells The values of the course columns of a row
+	 * @return True if every course column has a value
+	 */
+	private static boolean isComplete(String[] cells) {
+		for (String cell : cells) {
+			if (cell == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param b A byte of the file
+	 * @return True if the byte ends a field
+	 */
+	private static boolean isDelimiter(byte b) {
+		return b == ',' || b == '\n' || b == '\r';
+	}
+
+	/**
+	 * @param buffer The bytes to check
+	 * @param prefix The bytes that {@code buffer} should start with
+	 * @return True if the buffer starts with the prefix
+	 */
+	static boolean startsWith(ByteBuffer buffer, byte[] prefix) {
+		if (buffer.limit() < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (buffer.get(i) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,469 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Converts schedules into calendars with a fixed configuration: the dates of the terms, the time stamped on new events, and the time zones of the courses.
+ * <br>Immutable, so one engine can be shared by any number of threads, and engines with different term dates can convert schedules at the same time.
+ * A different configuration is made with {@link CalendarEngine#withTermRegistry(TermRegistry)}, {@link CalendarEngine#withTimestamp(Instant)},
+ * {@link CalendarEngine#withZone(ZoneId)}, or {@link CalendarEngine#withCampusZones(Map)}.
+ * <br>The times of a course are in the zone of its campus, found from the start of its location, or else in the zone of the engine.
+ * Every calendar carries the {@code VTIMEZONE} of each of these zones from {@link ICSTimeZone}, for the years that the terms cover.
+ * <br>Usage from a schedule to a calendar:
+ * <pre>
+ * CalendarEngine engine = new CalendarEngine(TermRegistry.read(termsFile));
+ * List&lt;Course&gt; courses = engine.readCourses(inputStream);
+ * engine.writeCalendar(courses, outputStream);
+ * </pre>
+ * The static methods of {@link CalendarEntryGenerator} use a default engine that the program configures once.
+ */
+public final class CalendarEngine {
+	// The constant parts of every event, in the order that they are written
+	private static final String BEGIN_EVENT = "BEGIN:VEVENT";
+	private static final String DTSTART = "DTSTART;TZID=";
+	private static final String DTEND = "DTEND;TZID=";
+	private static final String RRULE_UNTIL = "RRULE:FREQ=WEEKLY;UNTIL=";
+	private static final String RRULE_BYDAY = ";BYDAY=";
+	private static final String DTSTAMP = "DTSTAMP:";
+	private static final String UID = "UID:";
+	private static final String CREATED = "CREATED:";
+	private static final String DESCRIPTION = "DESCRIPTION:";
+	private static final String LAST_MODIFIED = "LAST-MODIFIED:";
+	private static final String SEQUENCE = "SEQUENCE:";
+	private static final String STATUS = "STATUS:CONFIRMED";
+	private static final String SUMMARY = "SUMMARY:";
+	private static final String TRANSP = "TRANSP:OPAQUE";
+	private static final String END_EVENT = "END:VEVENT";
+	private static final String ESCAPED_NEW_LINE = "\\n";
+
+	private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+	private final TermRegistry termRegistry;
+	/**
+	 * The {@code DTSTAMP}, {@code CREATED}, and {@code LAST-MODIFIED} of the new events, in UTC.
+	 * Computed once instead of for every event.
+	 */
+	private final String timestamp;
+	private final EventRevision firstRevision;
+	/**
+	 * The zone of the courses of no campus
+	 */
+	private final ZoneId zone;
+	/**
+	 * The starts of the locations of each campus, longest first, so that the most specific campus is found first
+	 */
+	private final String[] campusPrefixes;
+	/**
+	 * The zone of each campus, in the order of {@link CalendarEngine#campusPrefixes}
+	 */
+	private final ZoneId[] campusZones;
+	/**
+	 * The {@code VTIMEZONE} of every zone that a course can be in, shared with every other engine of the same zones and years
+	 */
+	private final String timeZones;
+
+	/**
+	 * @param termRegistry   The dates of the terms, or null if they are not known yet, in which case no event can be generated
+	 * @param timestamp      The time of the new events, in the format of {@code DTSTAMP}
+	 * @param zone           The zone of the courses of no campus
+	 * @param campusPrefixes The starts of the locations of each campus, longest first
+	 * @param campusZones    The zone of each campus
+	 */
+	private CalendarEngine(TermRegistry termRegistry, String timestamp, ZoneId zone, String[] campusPrefixes, ZoneId[] campusZones) {
+		this.termRegistry = termRegistry;
+		this.timestamp = timestamp;
+		this.firstRevision = EventRevision.first(timestamp);
+		this.zone = zone;
+		this.campusPrefixes = campusPrefixes;
+		this.campusZones = campusZones;
+		this.timeZones = this.generateTimeZones();
+	}
+
+	/**
+	 * @param termRegistry The dates of the terms, or null if they are not known yet
+	 * @param timestamp    The time of the new events, in the format of {@code DTSTAMP}
+	 */
+	private CalendarEngine(TermRegistry termRegistry, String timestamp) {
+		this(termRegistry, timestamp, ICSTimeZone.DEFAULT_ZONE, new String[0], new ZoneId[0]);
+	}
+
+	/**
+	 * @param termRegistry The dates of the terms of every academic year
+	 */
+	public CalendarEngine(TermRegistry termRegistry) {
+		this(termRegistry, Instant.now());
+	}
+
+	/**
+	 * @param termRegistry The dates of the terms of every academic year
+	 * @param timestamp    The time used for the {@code DTSTAMP}, {@code CREATED}, and {@code LAST-MODIFIED} of new events
+	 */
+	public CalendarEngine(TermRegistry termRegistry, Instant timestamp) {
+		this(Objects.requireNonNull(termRegistry, "termRegistry"), TIMESTAMP_FORMATTER.format(timestamp));
+	}
+
+	/**
+	 * @param terms The start and end of the terms in the format {@code YYYYMMDD}, as read by {@link TermDateGetter#getTerms()}
+	 * @return An engine that uses the same dates for every academic year
+	 */
+	public static CalendarEngine of(int[] terms) {
+		return new CalendarEngine(TermRegistry.of(terms));
+	}
+
+	/**
+	 * @return An engine stamped with the current time that does not know the dates of the terms yet, i.e. before the user gave them
+	 */
+	static CalendarEngine withoutTerms() {
+		return new CalendarEngine(null, TIMESTAMP_FORMATTER.format(Instant.now()));
+	}
+
+	/**
+	 * @param termRegistry The dates of the terms of every academic year
+	 * @return An engine with the same time as this one and the given dates
+	 */
+	public CalendarEngine withTermRegistry(TermRegistry termRegistry) {
+		return new CalendarEngine(Objects.requireNonNull(termRegistry, "termRegistry"), this.timestamp, this.zone, this.campusPrefixes, this.campusZones);
+	}
+
+	/**
+	 * @param timestamp The time used for the {@code DTSTAMP}, {@code CREATED}, and {@code LAST-MODIFIED} of new events
+	 * @return An engine with the same dates as this one and the given time
+	 */
+	public CalendarEngine withTimestamp(Instant timestamp) {
+		return new CalendarEngine(this.termRegistry, TIMESTAMP_FORMATTER.format(timestamp), this.zone, this.campusPrefixes, this.campusZones);
+	}
+
+	/**
+	 * @param zone The time zone of the courses of no campus, i.e. of a whole run
+	 * @return An engine with the same configuration as this one and the given zone
+	 */
+	public CalendarEngine withZone(ZoneId zone) {
+		return new CalendarEngine(this.termRegistry, this.timestamp, Objects.requireNonNull(zone, "zone"), this.campusPrefixes, this.campusZones);
+	}
+
+	/**
+	 * @param zonesByLocationPrefix The zone of each campus, by the start of the locations of the campus, i.e. {@code Worcester -> America/New_York}.
+	 *                              A course whose location starts with several of them is in the campus of the longest one
+	 * @return An engine with the same configuration as this one and the given campuses instead of its own
+	 */
+	public CalendarEngine withCampusZones(Map<String, ZoneId> zonesByLocationPrefix) {
+		List<Map.Entry<String, ZoneId>> campuses = new ArrayList<>(zonesByLocationPrefix.entrySet());
+		campuses.sort(Comparator.comparingInt((Map.Entry<String, ZoneId> campus) -> campus.getKey().length()).reversed());
+		String[] campusPrefixes = new String[campuses.size()];
+		ZoneId[] campusZones = new ZoneId[campuses.size()];
+		for (int i = 0; i < campusPrefixes.length; i++) {
+			campusPrefixes[i] = Objects.requireNonNull(campuses.get(i).getKey(), "location prefix");
+			campusZones[i] = Objects.requireNonNull(campuses.get(i).getValue(), "zone");
+		}
+		return new CalendarEngine(this.termRegistry, this.timestamp, this.zone, campusPrefixes, campusZones);
+	}
+
+	/**
+	 * @return The dates of the terms of every academic year, or null if they are not known yet
+	 */
+	public TermRegistry getTermRegistry() {
+		return termRegistry;
+	}
+
+	/**
+	 * @return The time zone of the courses of no campus
+	 */
+	public ZoneId getZone() {
+		return zone;
+	}
+
+	/**
+	 * @param course A course
+	 * @return The time zone of the campus of the course, or the zone of the engine if its location is not on any campus
+	 */
+	public ZoneId getZone(Course course) {
+		String location = course.getLocation();
+		if (location != null) {
+			for (int i = 0; i < this.campusPrefixes.length; i++) {
+				if (location.startsWith(this.campusPrefixes[i])) {
+					return this.campusZones[i];
+				}
+			}
+		}
+		return this.zone;
+	}
+
+	/**
+	 * @return The {@code VTIMEZONE} of every zone that a course can be in, each ending with a CRLF
+	 */
+	public String getTimeZones() {
+		return timeZones;
+	}
+
+	/**
+	 * @return The dates of the terms followed by the time zones and the versions of their rules, which together with a schedule decide its calendar.
+	 * Used as part of a {@link ConversionCache} key
+	 */
+	public int[] getCacheKey() {
+		List<String> zoneParts = new ArrayList<>();
+		zoneParts.add(this.zone.getId());
+		zoneParts.add(ICSTimeZone.getRulesVersion(this.zone));
+		for (int i = 0; i < this.campusPrefixes.length; i++) {
+			zoneParts.add(this.campusPrefixes[i]);
+			zoneParts.add(this.campusZones[i].getId());
+			zoneParts.add(ICSTimeZone.getRulesVersion(this.campusZones[i]));
+		}
+		int[] terms = this.termRegistry != null ? this.termRegistry.toArray() : new int[0];
+		// Each part is preceded by its length, so that different parts never give the same key
+		int length = terms.length;
+		for (String zonePart : zoneParts) {
+			length += 1 + zonePart.length();
+		}
+		int[] cacheKey = Arrays.copyOf(terms, length);
+		int position = terms.length;
+		for (String zonePart : zoneParts) {
+			cacheKey[position++] = zonePart.length();
+			for (int i = 0; i < zonePart.length(); i++) {
+				cacheKey[position++] = zonePart.charAt(i);
+			}
+		}
+		return cacheKey;
+	}
+
+	/**
+	 * @return The {@code VTIMEZONE} of the zone of the engine, then of the zone of each campus that is not already written,
+	 * for the years from the first to the last date of the terms
+	 */
+	private String generateTimeZones() {
+		int firstYear = this.termRegistry != null ? this.termRegistry.getFirstYear() : -1;
+		int lastYear = this.termRegistry != null ? this.termRegistry.getLastYear() : -1;
+		if (firstYear == -1) {
+			// No event can be generated without the terms, so the zones are only written for the current year
+			firstYear = lastYear = LocalDate.now(ZoneOffset.UTC).getYear();
+		}
+		Set<ZoneId> zones = new LinkedHashSet<>();
+		zones.add(this.zone);
+		zones.addAll(Arrays.asList(this.campusZones));
+		StringBuilder timeZones = new StringBuilder();
+		for (ZoneId zone : zones) {
+			timeZones.append(ICSTimeZone.getVTimeZone(zone, firstYear, lastYear));
+		}
+		return timeZones.toString();
+	}
+
+	/**
+	 * @return The time of the new events, in the format of {@code DTSTAMP}
+	 */
+	public String getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return The revision of the events that did not exist before
+	 */
+	public EventRevision getFirstRevision() {
+		return firstRevision;
+	}
+
+	/**
+	 * Reads the courses of a schedule. The schedule is read from the stream at once, and its courses are held by column in a {@link CourseTable}
+	 *
+	 * @param inputStream The XLSX or CSV schedule. Not closed
+	 * @return The courses in the order that they appear in the schedule, as read only views
+	 * @throws Exception Thrown if the schedule could not be read, repaired, or parsed
+	 */
+	public List<Course> readCourses(InputStream inputStream) throws Exception {
+		CourseTable courseTable = new CourseTable();
+		ScheduleReader.parseBytes(inputStream.readAllBytes(), courseTable);
+		return courseTable.asList();
+	}
+
+	/**
+	 * @param file The XLSX or CSV schedule
+	 * @return The courses in the order that they appear in the schedule, as read only views
+	 * @throws Exception Thrown if the schedule could not be read, repaired, or parsed
+	 */
+	public List<Course> readCourses(File file) throws Exception {
+		CourseTable courseTable = new CourseTable();
+		ScheduleReader.parseFile(file, courseTable);
+		return courseTable.asList();
+	}
+
+	/**
+	 * @param channel Where to write a calendar
+	 * @return A writer that generates its events with this engine
+	 */
+	public ICSWriter newWriter(WritableByteChannel channel) {
+		return new ICSWriter(channel, this);
+	}
+
+	/**
+	 * Writes a whole calendar containing an event for every course
+	 *
+	 * @param courses      The courses to write an event for
+	 * @param outputStream Where to write the calendar. Not closed
+	 * @throws IOException Thrown if the calendar could not be written
+	 */
+	public void writeCalendar(List<Course> courses, OutputStream outputStream) throws IOException {
+		this.newWriter(Channels.newChannel(outputStream)).writeCalendar(courses);
+	}
+
+	/**
+	 * @param courses The courses to write an event for
+	 * @return The bytes of the calendar
+	 */
+	public byte[] toByteArray(List<Course> courses) {
+		try {
+			return ICSWriter.toByteArray(courses, this);
+		} catch (IOException e) {
+			// Nothing is written outside of memory
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Saves the calendar in {@code file} the same way as {@link ICSWriter#saveCalendar(List, Path)}, so it is never seen partly written
+	 *
+	 * @param courses The courses to write an event for
+	 * @param file    The file to save the calendar in. Replaced if it already exists
+	 * @return The number of bytes in the calendar
+	 * @throws IOException Thrown if the calendar could not be saved. {@code file} is left as it was
+	 */
+	public long saveCalendar(List<Course> courses, Path file) throws IOException {
+		return ICSWriter.saveCalendar(file, this, icsWriter -> icsWriter.writeCalendar(courses));
+	}
+
+	/**
+	 * Converts a schedule into a calendar
+	 *
+	 * @param inputStream The XLSX or CSV schedule. Not closed
+	 * @return The bytes of the calendar
+	 * @throws Exception Thrown if the schedule could not be read or a course could not be converted
+	 */
+	public byte[] convert(InputStream inputStream) throws Exception {
+		return this.toByteArray(this.readCourses(inputStream));
+	}
+
+	/**
+	 * @param course The course to generate the event of
+	 * @return The event of the course in the ICS format, as described by {@link CalendarEntryGenerator#generateEvent(Course)}
+	 */
+	public String generateEvent(Course course) {
+		StringBuilder event = new StringBuilder(512);
+		this.generateEvent(course, new ICSLineFolder(event), CalendarEngine.getUID(course), this.firstRevision);
+		return event.toString();
+	}
+
+	/**
+	 * Appends the event of {@code course} to {@code out}, folding and escaping every line as it is written.
+	 * The event does not end with a new line.
+	 *
+	 * @param course   The course to generate the event of
+	 * @param out      The folder to append the event to
+	 * @param uid      The UID of the event, from {@link CalendarEngine#getUID(Course, int)}
+	 * @param revision The {@code DTSTAMP}, {@code CREATED}, {@code LAST-MODIFIED}, and {@code SEQUENCE} of the event
+	 * @throws IllegalArgumentException Thrown if the term or the meetings of the course cannot be converted
+	 */
+	public void generateEvent(Course course, ICSLineFolder out, String uid, EventRevision revision) {
+		if (this.termRegistry == null) {
+			throw new RuntimeException("An error has occurred. A calendar entry was attempted to be created without defining terms");
+		}
+
+		// The days and times of the course, parsed once when the course was built
+		MeetingPattern meetingPattern = course.getMeetingPattern();
+		// The days of the week of which the course is held
+		String days = meetingPattern.getByDay();
+
+		String term = course.getTerm();
+		int span = TermCalendar.getSpanIndex(term);
+
+		// The dates of the academic year of the course
+		TermCalendar termCalendar = this.termRegistry.getCalendar(course.getParsedTerm());
+		if (span == -1 || termCalendar == null || !termCalendar.isDefined(span)) {
+			throw new IllegalArgumentException("Invalid term: " + (course.getParsedTerm() != null ? course.getParsedTerm() : term));
+		}
+
+		// The first day on or after the start of the term that the class has
+		// This prevents all the classes being present on the first day of the term, regardless if that class is actually happening that day
+		int firstDay = termCalendar.getFirstMeetingDate(span, meetingPattern.getDays());
+		if (firstDay == -1) {
+			throw new IllegalArgumentException("The course has no meeting days: " + course.getCourse());
+		}
+
+		// Every line is folded to 75 octets as it is written, to follow ICS guidelines
+		ZoneId zone = this.getZone(course);
+		String zoneId = zone.getId();
+		out.append(BEGIN_EVENT).endLine();
+		out.append(DTSTART).append(zoneId).append(':').append(firstDay).append('T');
+		MeetingPattern.appendTime(out, meetingPattern.getStartMinute());
+		out.endLine();
+		out.append(DTEND).append(zoneId).append(':').append(firstDay).append('T');
+		MeetingPattern.appendTime(out, meetingPattern.getEndMinute());
+		out.endLine();
+		// The last meeting is before the end of the last day of the term in the zone of the course
+		out.append(RRULE_UNTIL).append(ICSTimeZone.getUntil(zone, termCalendar.getEndEpochDay(span))).append(RRULE_BYDAY).append(days).endLine();
+		out.append(DTSTAMP).append(revision.getTimestamp()).endLine();
+		out.append(UID).append(uid).endLine();
+		out.append(CREATED).append(revision.getCreated()).endLine();
+		// The description is made of text values separated by escaped new lines
+		out.append(DESCRIPTION).appendText(course.getCourse()).append(ESCAPED_NEW_LINE).appendText(course.getMeetings())
+				.append(" | ").appendText(course.getLocation()).append(ESCAPED_NEW_LINE).appendText(course.getInstructor()).endLine();
+		out.append(LAST_MODIFIED).append(revision.getLastModified()).endLine();
+		out.append(SEQUENCE).append(revision.getSequence()).endLine();
+		out.append(STATUS).endLine();
+		out.append(SUMMARY).appendText(course.getDisplayName()).endLine();
+		out.append(TRANSP).endLine();
+		out.append(END_EVENT);
+	}
+
+	/**
+	 * @param course The course
+	 * @return The UID of the first event of the course's section in its term
+	 * @see CalendarEngine#getUID(Course, int)
+	 */
+	public static String getUID(Course course) {
+		return CalendarEngine.getUID(course, 1);
+	}
+
+	/**
+	 * Derives the UID of an event from the section and the term of its course, so that converting the same schedule again gives every event the same UID.
+	 * Calendar clients then see the events as the same events instead of replacing all of them.
+	 * <br>A section that meets at several times has one row, and so one event, per time. Each of these events after the first is told apart by its occurrence.
+	 *
+	 * @param course     The course
+	 * @param occurrence 1 for the first event of the section in the calendar, 2 for the second, and so on
+	 * @return A name based (version 3) UUID
+	 */
+	public static String getUID(Course course, int occurrence) {
+		Term parsedTerm = course.getParsedTerm();
+		String name = course.getSection() + '\n' + (parsedTerm != null ? parsedTerm.toString() : course.getTerm());
+		if (occurrence > 1) {
+			name += "\n" + occurrence;
+		}
+		return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString();
+	}
+
+	@Override
+	public String toString() {
+		return "CalendarEngine{" +
+				"termRegistry=" + termRegistry +
+				", timestamp='" + timestamp + '\'' +
+				", zone=" + zone +
+				", campusZones=" + campusPrefixes.length +
+				'}';
+	}
+}
@@ -1,33 +1,52 @@
-import java.time.DayOfWeek;
-import java.time.LocalDate;
-import java.time.format.TextStyle;
-import java.util.HashMap;
-import java.util.Locale;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.Map;
-import java.util.UUID;
 
+/**
+ * The static entry points of the program, each of them a wrapper around a default {@link CalendarEngine}.
+ * <br>The default engine is replaced as a whole whenever the terms or the time change, so a conversion that took it keeps consistent settings.
+ * Code that converts schedules with different settings at the same time should use its own {@link CalendarEngine} instead.
+ */
 public class CalendarEntryGenerator {
-	private static int[] terms;
-	private static final Map<String, Integer> TERM_MAP = new HashMap<>(8);
+	private static volatile CalendarEngine engine = CalendarEngine.withoutTerms();
 
+	/**
+	 * @return The default engine, configured by the setters of this class. Take it once per calendar
+	 */
+	public static CalendarEngine getEngine() {
+		return CalendarEntryGenerator.engine;
+	}
+
+	/**
+	 * @param terms The start and end of the terms in the format {@code YYYYMMDD}, as read by {@link TermDateGetter#getTerms()}
+	 */
 	public static void setTerms(int[] terms) {
-		CalendarEntryGenerator.terms = terms;
+		CalendarEntryGenerator.setTermRegistry(TermRegistry.of(terms));
 	}
 
-	static {
-		// Update the seasons to the term map
-		TERM_MAP.put("Fall", 0);   // Fall starts at index 0
-		TERM_MAP.put("Spring", 4); // Spring starts at index 4
+	/**
+	 * @param termRegistry The dates of the terms of every academic year, used by every calendar started afterward
+	 */
+	public static synchronized void setTermRegistry(TermRegistry termRegistry) {
+		CalendarEntryGenerator.engine = CalendarEntryGenerator.engine.withTermRegistry(termRegistry);
+	}
+
+	/**
+	 * @return The dates of the terms of every academic year, or null if they were never set
+	 */
+	public static TermRegistry getTermRegistry() {
+		return CalendarEntryGenerator.engine.getTermRegistry();
 	}
 
 	/**
 	 * Generates a calendar event in the ICS format:
 	 * <code><br>
 	 * BEGIN:VEVENT<br>
-	 * DTSTART;TZID=America/New_York:20230824T{@link Course#getStartTime() start time}<br>
-	 * DTEND;TZID=America/New_York:20230824T{@link Course#getEndTime() end time}<br>
-	 * RRULE:FREQ=WEEKLY;UNTIL={END DATE + 1}T035959Z;BYDAY={@link Course#getDays() days}<br>
+	 * DTSTART;TZID={@link CalendarEngine#getZone(Course) zone}:20230824T{@link Course#getStartTime() start time}<br>
+	 * DTEND;TZID={@link CalendarEngine#getZone(Course) zone}:20230824T{@link Course#getEndTime() end time}<br>
+	 * RRULE:FREQ=WEEKLY;UNTIL={END DATE}T235959 in the zone, in UTC;BYDAY={@link Course#getDays() days}<br>
 	 * DTSTAMP:20230813T211907Z<br>
+	 * UID:{@link CalendarEntryGenerator#getUID(Course) UID}<br>
 	 * CREATED:20230805T145653Z<br>
 	 * DESCRIPTION:{@link Course#getCourse() course title}\n{@link Course#getMeetings() meetings} | {@link Course#getLocation() location}\n{@link Course#getInstructor() instructor}<br>
 	 * LAST-MODIFIED:20230805T145653Z<br>
@@ -42,136 +61,95 @@ public class CalendarEntryGenerator {
 	 * @return A String of a generated event in the proper ICS format
 	 */
 	public static String generateEvent(Course course) {
-		if (CalendarEntryGenerator.terms == null) {
-			throw new RuntimeException("An error has occurred. A calendar entry was attempted to be created without defining terms");
-		}
-
-		// The days of the week of which the course is held
-		String days = course.getDays();
-
-		String term = course.getTerm();
-		int termIndex = CalendarEntryGenerator.getTermIndex(term);
-
-		if (termIndex == -1) {
-			throw new IllegalArgumentException("Invalid term: " + term);
-		}
-
-		// Determine the first day after the starting day of the term that the class has
-		// This prevents all the classes being present on the first day of the term, regardless if that class is actually happening that day
-		String firstDayOfTerm;
-		int endTermIndex;
-		if (term.length() > 2) {
-			int startTermIndex = TERM_MAP.get(term);
-			endTermIndex = startTermIndex + 3; // Fall ends at index 3, Spring ends at index 7
-			firstDayOfTerm = CalendarEntryGenerator.getDayOfWeek(terms[startTermIndex]);
-			termIndex = startTermIndex;
-		} else {
-			firstDayOfTerm = CalendarEntryGenerator.getDayOfWeek(terms[termIndex]);
-			endTermIndex = termIndex + 1;
-		}
-
-		int dayShift = 0;
-		while (!days.contains(firstDayOfTerm)) {
-			firstDayOfTerm = CalendarEntryGenerator.getDayOfWeek(terms[termIndex] + dayShift);
-			dayShift++;
-		}
-
-		// Get rid of the extra shift at the end
-		if (dayShift > 0) dayShift--;
-
-		// Get the current date and time
-		String currentDate = String.valueOf(java.time.LocalDateTime.now());
-		currentDate = currentDate.substring(0, currentDate.indexOf("."));
-		currentDate = currentDate.replaceAll("-", "").replaceAll(":", "");
+		return CalendarEntryGenerator.engine.generateEvent(course);
+	}
 
-		// Create the description
-		String description = course.getCourse() + "\\n" + course.getMeetings() + " | " + course.getLocation() + "\\n" + course.getInstructor();
-		// Make sure that the description is not longer than 75 characters (75 - 13 for DESCRIPTION:) to follow ICS guidelines
-		// ICS requires that new lines be CRLF instead of \n.
-		final String delim = "\r\n";
-		description = "DESCRIPTION:" + description;
-		description = CalendarEntryGenerator.delimiterEveryNCharacters(description, 75, delim + " ");
-		description = description.replace("DESCRIPTION:", "");
+	/**
+	 * Appends the event of {@code course} to {@code out} in the same format as {@link CalendarEntryGenerator#generateEvent(Course)}.
+	 * <br>Nothing but the event is created, so generating a large number of events into one buffer puts little load on the garbage collector.
+	 * The event does not end with a new line.
+	 *
+	 * @param course The course to generate the event of
+	 * @param out    The buffer to append the event to. Must be empty or end at the start of a line
+	 */
+	public static void generateEvent(Course course, StringBuilder out) {
+		CalendarEntryGenerator.generateEvent(course, new ICSLineFolder(out));
+	}
 
-		return "BEGIN:VEVENT" + delim +
-				"DTSTART;TZID=America/New_York:" + (terms[termIndex] + dayShift) + "T" + course.getStartTime() + delim +
-				"DTEND;TZID=America/New_York:" + (terms[termIndex] + dayShift) + "T" + course.getEndTime() + delim +
-				"RRULE:FREQ=WEEKLY;UNTIL=" + (terms[endTermIndex] + 1) + "T035959Z;BYDAY=" + days + delim +
-				"DTSTAMP:" + currentDate + "Z" + delim +
-				"UID:" + UUID.randomUUID() + delim +
-				"CREATED:" + currentDate + "Z" + delim +
-				"DESCRIPTION:" + description + delim +
-				"LAST-MODIFIED:" + currentDate + "Z" + delim +
-				"SEQUENCE:0" + delim +
-				"STATUS:CONFIRMED" + delim +
-				"SUMMARY:" + course.getDisplayName() + delim +
-				"TRANSP:OPAQUE" + delim +
-				"END:VEVENT";
+	/**
+	 * Appends the event of {@code course} to {@code out}, folding and escaping every line as it is written
+	 *
+	 * @param course The course to generate the event of
+	 * @param out    The folder to append the event to
+	 * @see CalendarEntryGenerator#generateEvent(Course, StringBuilder)
+	 */
+	public static void generateEvent(Course course, ICSLineFolder out) {
+		CalendarEngine currentEngine = CalendarEntryGenerator.engine;
+		currentEngine.generateEvent(course, out, CalendarEngine.getUID(course), currentEngine.getFirstRevision());
 	}
 
 	/**
-	 * Uses {@link CalendarEntryGenerator#TERM_MAP}
+	 * Appends the event of {@code course} to {@code out} with the given identity and revision, i.e. those of the event in a previously written calendar
 	 *
-	 * @param term The term to get the term index of
-	 * @return The index of either a {@link CalendarEntryGenerator#TERM_MAP} index, an index to the terms, or -1 if it is not found
+	 * @param course   The course to generate the event of
+	 * @param out      The folder to append the event to
+	 * @param uid      The UID of the event, from {@link CalendarEntryGenerator#getUID(Course, int)}
+	 * @param revision The {@code DTSTAMP}, {@code CREATED}, {@code LAST-MODIFIED}, and {@code SEQUENCE} of the event
+	 * @see CalendarEngine#generateEvent(Course, ICSLineFolder, String, EventRevision)
 	 */
-	private static int getTermIndex(String term) {
-		if (term.length() == 1) {
-			// Multiply by 2 since there is a start and end of every term
-			// 65 represents 'A'
-			return (term.charAt(0) - 65) * 2;
-		} else {
-			Integer index = TERM_MAP.get(term);
-			return index != null ? index : -1;
-		}
+	public static void generateEvent(Course course, ICSLineFolder out, String uid, EventRevision revision) {
+		CalendarEntryGenerator.engine.generateEvent(course, out, uid, revision);
 	}
 
 	/**
-	 * This is to fold text to be compliant with ICS guidelines
+	 * Sets the time used for the {@code DTSTAMP}, {@code CREATED}, and {@code LAST-MODIFIED} of every event generated afterward.
+	 * <br>By default, this is the time the program started.
 	 *
-	 * @param inputString The input string to split
-	 * @param n           The number of characters to split after
-	 * @param delimiter   The delimiter to join the split string with
-	 * @return The input string with the delimiter every n characters
+	 * @param instant The time to use
 	 */
-	private static String delimiterEveryNCharacters(String inputString, int n, String delimiter) {
-		String outputString = inputString;
-		if (inputString.length() > n) {
-			StringBuilder newString = new StringBuilder();
-			String[] splitString = outputString.split("(?<=\\G.{" + n + "})");
-			for (int i = 0; i < splitString.length; i++) {
-				String s = splitString[i];
-				newString.append(s);
-				if (i < splitString.length - 1) newString.append(delimiter);
-			}
-			outputString = newString.toString();
-		}
-		return outputString;
+	public static synchronized void setTimestamp(Instant instant) {
+		CalendarEntryGenerator.engine = CalendarEntryGenerator.engine.withTimestamp(instant);
 	}
 
 	/**
-	 * @param date The date from which to get the day of the week
-	 * @return The day of the week shortened (i.e. MO for Monday)
+	 * @param zone                  The time zone of the courses of no campus, used by every calendar started afterward
+	 * @param zonesByLocationPrefix The zone of each campus, by the start of the locations of the campus
+	 * @see CalendarEngine#withCampusZones(Map)
 	 */
-	private static String getDayOfWeek(int date) {
-		// Get the date in a LocalDate object
-		String termString = String.valueOf(date);
-		int year = Integer.parseInt(termString.substring(0, 4));
-		int month = Integer.parseInt(termString.substring(4, 6));
-		int day = Integer.parseInt(termString.substring(6));
-		LocalDate localDate = LocalDate.of(year, month, day);
+	public static synchronized void setZones(ZoneId zone, Map<String, ZoneId> zonesByLocationPrefix) {
+		CalendarEntryGenerator.engine = CalendarEntryGenerator.engine.withZone(zone).withCampusZones(zonesByLocationPrefix);
+	}
 
-		// Get the day of the week of the date
-		Locale locale = new Locale("en");
-		DayOfWeek dayOfWeek = localDate.getDayOfWeek();
-		String displayName = dayOfWeek.getDisplayName(TextStyle.FULL, locale);
+	/**
+	 * @return The time used for the events generated now, in the format of {@code DTSTAMP}
+	 */
+	public static String getTimestamp() {
+		return CalendarEntryGenerator.engine.getTimestamp();
+	}
 
-		// Turn the display name into the same format as it is in the calendar
-		displayName = displayName.replace("Monday", "MO");
-		displayName = displayName.replace("Tuesday", "TU");
-		displayName = displayName.replace("Wednesday", "WE");
-		displayName = displayName.replace("Thursday", "TH");
-		displayName = displayName.replace("Friday", "FR");
-		return displayName;
+	/**
+	 * @return The revision of the events generated now that did not exist before
+	 */
+	public static EventRevision getFirstRevision() {
+		return CalendarEntryGenerator.engine.getFirstRevision();
+	}
+
+	/**
+	 * @param course The course
+	 * @return The UID of the first event of the course's section in its term
+	 * @see CalendarEngine#getUID(Course)
+	 */
+	public static String getUID(Course course) {
+		return CalendarEngine.getUID(course);
+	}
+
+	/**
+	 * @param course     The course
+	 * @param occurrence 1 for the first event of the section in the calendar, 2 for the second, and so on
+	 * @return A name based (version 3) UUID
+	 * @see CalendarEngine#getUID(Course, int)
+	 */
+	public static String getUID(Course course, int occurrence) {
+		return CalendarEngine.getUID(course, occurrence);
 	}
 }
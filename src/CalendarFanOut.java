@@ -0,0 +1,343 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Writes one calendar per room and one calendar per instructor from a single catalog export, for facilities and department admins.
+ * <br>Usage: {@code --fan-out <schedule> <output directory> [--by rooms|instructors|both] [--threads N] [--terms FILE] [--zone ZONE] [--campus-zone PREFIX=ZONE]}
+ * <br>The export is read once into a {@link CourseTable}, and the event of every row is generated and encoded once.
+ * The rows are then grouped by the codes of their location and instructor, and every group calendar is written on its own thread
+ * from the shared encoded events, so an event that belongs to a room and to an instructor is never generated twice.
+ * <br>The calendars are saved in the {@code rooms} and {@code instructors} directories of the output directory.
+ */
+public class CalendarFanOut {
+	private static final String ROOM_DIRECTORY = "rooms";
+	private static final String INSTRUCTOR_DIRECTORY = "instructors";
+
+	/**
+	 * The rows of every group, stored as one array of rows sorted by group and the offset of each group in it
+	 */
+	private static final class GroupIndex {
+		/**
+		 * The first index in {@link GroupIndex#rows} of each group, followed by the number of rows
+		 */
+		private final int[] offsets;
+		private final int[] rows;
+
+		/**
+		 * @param courseTable The table to group
+		 * @param groupCount  The number of groups
+		 * @param groupOfRow  The group of a row, or {@link CourseTable#NO_VALUE} if it is in none
+		 * @param groupName   The name of a group. The rows of a group whose name is blank are in no group, the same as the rows without one
+		 */
+		private GroupIndex(CourseTable courseTable, int groupCount, IntUnaryOperator groupOfRow, IntFunction<String> groupName) {
+			boolean[] blankGroups = new boolean[groupCount];
+			for (int group = 0; group < groupCount; group++) {
+				String name = groupName.apply(group);
+				blankGroups[group] = name == null || name.isBlank();
+			}
+			groupOfRow = groupOfRow.andThen(group -> group != CourseTable.NO_VALUE && blankGroups[group] ? CourseTable.NO_VALUE : group);
+
+			this.offsets = new int[groupCount + 1];
+			int rowCount = courseTable.size();
+			for (int row = 0; row < rowCount; row++) {
+				int group = groupOfRow.applyAsInt(row);
+				if (group != CourseTable.NO_VALUE) {
+					this.offsets[group + 1]++;
+				}
+			}
+			for (int group = 0; group < groupCount; group++) {
+				this.offsets[group + 1] += this.offsets[group];
+			}
+			// Rows are added in order, so the rows of each group stay in the order of the export
+			this.rows = new int[this.offsets[groupCount]];
+			int[] positions = this.offsets.clone();
+			for (int row = 0; row < rowCount; row++) {
+				int group = groupOfRow.applyAsInt(row);
+				if (group != CourseTable.NO_VALUE) {
+					this.rows[positions[group]++] = row;
+				}
+			}
+		}
+
+		private int getGroupCount() {
+			return this.offsets.length - 1;
+		}
+	}
+
+	private final int parallelism;
+	private final CalendarEngine engine;
+	private final AtomicInteger writtenCalendars = new AtomicInteger();
+	private final AtomicInteger failedCalendars = new AtomicInteger();
+	private final AtomicLong writtenBytes = new AtomicLong();
+	private int skippedRows;
+
+	/**
+	 * @param parallelism The number of calendars to write at once
+	 * @param engine      Generates every event
+	 */
+	public CalendarFanOut(int parallelism, CalendarEngine engine) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("The parallelism must be at least 1, but was " + parallelism);
+		}
+		this.parallelism = parallelism;
+		this.engine = engine;
+	}
+
+	/**
+	 * Runs the fan-out mode from the command line arguments
+	 *
+	 * @param args The command line arguments, starting with {@code --fan-out}
+	 * @return The exit code. 0 if every calendar was written, 1 if some failed, and 2 if the arguments or the export are invalid
+	 */
+	public static int run(String[] args) {
+		if (args.length < 3) {
+			System.err.println("Usage: --fan-out <schedule> <output directory> [--by rooms|instructors|both] [--threads N] [--terms FILE] [--zone ZONE] [--campus-zone PREFIX=ZONE]");
+			return 2;
+		}
+		File inputFile = new File(args[1]);
+		File outputDirectory = new File(args[2]);
+		boolean byRoom = true;
+		boolean byInstructor = true;
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		Path termsFile = null;
+		ZoneId zone = ICSTimeZone.DEFAULT_ZONE;
+		Map<String, ZoneId> campusZones = new LinkedHashMap<>();
+		for (int i = 3; i < args.length; i++) {
+			if (args[i].equals("--by") && i + 1 < args.length) {
+				String by = args[++i];
+				byRoom = by.equals("rooms") || by.equals("both");
+				byInstructor = by.equals("instructors") || by.equals("both");
+				if (!byRoom && !byInstructor) {
+					System.err.println("Unknown grouping: " + by);
+					return 2;
+				}
+			} else if (args[i].equals("--threads") && i + 1 < args.length) {
+				parallelism = BatchConverter.parseThreads(args[++i]);
+				if (parallelism < 1) {
+					return 2;
+				}
+			} else if (args[i].equals("--terms") && i + 1 < args.length) {
+				termsFile = Path.of(args[++i]);
+			} else if (args[i].equals("--zone") && i + 1 < args.length) {
+				zone = ICSTimeZone.parseZone(args[++i]);
+				if (zone == null) {
+					return 2;
+				}
+			} else if (args[i].equals("--campus-zone") && i + 1 < args.length) {
+				if (!ICSTimeZone.putCampusZone(campusZones, args[++i])) {
+					return 2;
+				}
+			} else {
+				System.err.println("Unknown argument: " + args[i]);
+				return 2;
+			}
+		}
+
+		// Get the terms, without ever waiting for the console
+		TermRegistry termRegistry;
+		try {
+			termRegistry = termsFile != null ? TermRegistry.read(termsFile) : TermRegistry.of(TermDateGetter.readTerms());
+		} catch (IOException e) {
+			System.err.println("Could not read the term dates: " + e);
+			return 2;
+		}
+
+		CourseTable courseTable = new CourseTable();
+		try {
+			ScheduleReader.parseFile(inputFile, courseTable);
+		} catch (Exception e) {
+			ConversionMetrics.recordError(e);
+			System.err.println("Could not read " + inputFile + ": " + e);
+			return 2;
+		}
+
+		CalendarFanOut calendarFanOut = new CalendarFanOut(parallelism, new CalendarEngine(termRegistry).withZone(zone).withCampusZones(campusZones));
+		long startTime = System.nanoTime();
+		calendarFanOut.fanOut(courseTable, outputDirectory, byRoom, byInstructor);
+		System.out.printf("Wrote %d calendars (%d bytes) from %d rows in %.2f s, %d rows skipped, %d failures%n",
+				calendarFanOut.getWrittenCalendars(), calendarFanOut.getWrittenBytes(), courseTable.size(),
+				(System.nanoTime() - startTime) / 1e9, calendarFanOut.getSkippedRows(), calendarFanOut.getFailedCalendars());
+		return calendarFanOut.getFailedCalendars() == 0 ? 0 : 1;
+	}
+
+	/**
+	 * Writes the calendar of every room and every instructor of the table.
+	 * A calendar that fails to be written is reported and counted, and the rest are still written.
+	 *
+	 * @param courseTable     The courses of the export
+	 * @param outputDirectory The directory to save the {@code rooms} and {@code instructors} directories in
+	 * @param byRoom          True to write a calendar per room
+	 * @param byInstructor    True to write a calendar per instructor
+	 */
+	public void fanOut(CourseTable courseTable, File outputDirectory, boolean byRoom, boolean byInstructor) {
+		byte[][] encodedEvents = this.encodeEvents(courseTable);
+
+		ExecutorService executor = Executors.newFixedThreadPool(this.parallelism);
+		if (byRoom) {
+			GroupIndex roomIndex = new GroupIndex(courseTable, courseTable.getLocationCount(), courseTable::getLocationCode, courseTable::getLocationOfCode);
+			this.submitGroups(executor, roomIndex, encodedEvents, new File(outputDirectory, ROOM_DIRECTORY), courseTable::getLocationOfCode);
+		}
+		if (byInstructor) {
+			GroupIndex instructorIndex = new GroupIndex(courseTable, courseTable.getInstructorCount(), courseTable::getInstructorCode, courseTable::getInstructorOfCode);
+			this.submitGroups(executor, instructorIndex, encodedEvents, new File(outputDirectory, INSTRUCTOR_DIRECTORY), courseTable::getInstructorOfCode);
+		}
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				System.out.println("Still writing..." + this.writtenCalendars.get() + " calendars done.");
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Generates the event of every row once, with the same UIDs that {@link ICSWriter} would give them in a calendar of the whole export,
+	 * so that an event has the same UID in every calendar it is in
+	 *
+	 * @param courseTable The courses of the export
+	 * @return The UTF-8 bytes of the event of each row, or null for a row whose event could not be generated
+	 */
+	private byte[][] encodeEvents(CourseTable courseTable) {
+		byte[][] encodedEvents = new byte[courseTable.size()][];
+		// Only used for its UIDs
+		ICSWriter uidWriter = this.engine.newWriter(Channels.newChannel(OutputStream.nullOutputStream()));
+		EventRevision firstRevision = this.engine.getFirstRevision();
+		StringBuilder eventBuffer = new StringBuilder(1024);
+		ICSLineFolder eventFolder = new ICSLineFolder(eventBuffer);
+		for (int row = 0; row < encodedEvents.length; row++) {
+			Course course = courseTable.get(row);
+			eventBuffer.setLength(0);
+			long startNanos = ConversionMetrics.startStage();
+			try {
+				this.engine.generateEvent(course, eventFolder, uidWriter.assignUID(course), firstRevision);
+				eventFolder.endLine();
+			} catch (RuntimeException e) {
+				ConversionMetrics.recordError(e);
+				System.err.println(course.getCourse() + " could not be converted and was skipped: " + e.getMessage());
+				this.skippedRows++;
+				continue;
+			}
+			encodedEvents[row] = eventBuffer.toString().getBytes(StandardCharsets.UTF_8);
+			ConversionMetrics.endStage(ConversionStage.GENERATE, startNanos, 1);
+		}
+		return encodedEvents;
+	}
+
+	/**
+	 * @param executor      Where to write the calendars
+	 * @param groupIndex    The rows of every group
+	 * @param encodedEvents The events of every row
+	 * @param directory     The directory to save the calendars in
+	 * @param groupName     The name of a group, i.e. the location of its code
+	 */
+	private void submitGroups(ExecutorService executor, GroupIndex groupIndex, byte[][] encodedEvents, File directory, IntFunction<String> groupName) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			System.err.println("Could not create the directory " + directory + ".");
+			this.failedCalendars.addAndGet(groupIndex.getGroupCount());
+			return;
+		}
+		Set<String> fileNames = new HashSet<>();
+		for (int group = 0; group < groupIndex.getGroupCount(); group++) {
+			int start = groupIndex.offsets[group];
+			int end = groupIndex.offsets[group + 1];
+			if (start == end) {
+				// A blank name, whose rows are in no group
+				continue;
+			}
+			String fileName = CalendarFanOut.getCalendarFileName(groupName.apply(group));
+			String baseName = fileName.substring(0, fileName.length() - ".ics".length());
+			// Two names that only differ in the characters that were replaced still get their own calendars,
+			// even if the name made for one of them is already the name of another group
+			for (int suffix = group; !fileNames.add(fileName); suffix++) {
+				fileName = baseName + "-" + suffix + ".ics";
+			}
+			Path file = new File(directory, fileName).toPath();
+			executor.execute(() -> this.writeGroup(groupIndex.rows, start, end, encodedEvents, file));
+		}
+	}
+
+	/**
+	 * Saves the calendar of a group. Any error is reported and counted as a failure instead of being thrown.
+	 *
+	 * @param rows          The rows of every group
+	 * @param start         The index in {@code rows} of the first row of the group
+	 * @param end           The index in {@code rows} after the last row of the group
+	 * @param encodedEvents The events of every row
+	 * @param file          Where to save the calendar
+	 */
+	private void writeGroup(int[] rows, int start, int end, byte[][] encodedEvents, Path file) {
+		try {
+			long bytes = ICSWriter.saveCalendar(file, this.engine, icsWriter -> {
+				icsWriter.writeHeader();
+				for (int i = start; i < end; i++) {
+					byte[] encodedEvent = encodedEvents[rows[i]];
+					if (encodedEvent != null) {
+						icsWriter.writeEncodedEvent(encodedEvent);
+					}
+				}
+				icsWriter.writeFooter();
+				icsWriter.flush();
+			});
+			this.writtenBytes.addAndGet(bytes);
+			this.writtenCalendars.incrementAndGet();
+		} catch (IOException e) {
+			this.failedCalendars.incrementAndGet();
+			ConversionMetrics.recordError(e);
+			System.err.println("Failed to write " + file + ": " + e);
+		}
+	}
+
+	/**
+	 * @param groupName The name of a room or an instructor
+	 * @return The name of its calendar file, with every character that is not safe in a file name replaced
+	 */
+	private static String getCalendarFileName(String groupName) {
+		return groupName.replaceAll("[^A-Za-z0-9._-]", "_") + ".ics";
+	}
+
+	/**
+	 * @return The number of calendars that were saved
+	 */
+	public int getWrittenCalendars() {
+		return writtenCalendars.get();
+	}
+
+	/**
+	 * @return The number of calendars that could not be saved
+	 */
+	public int getFailedCalendars() {
+		return failedCalendars.get();
+	}
+
+	/**
+	 * @return The number of bytes in every saved calendar
+	 */
+	public long getWrittenBytes() {
+		return writtenBytes.get();
+	}
+
+	/**
+	 * @return The number of rows whose event could not be generated, so they are in no calendar
+	 */
+	public int getSkippedRows() {
+		return skippedRows;
+	}
+}
@@ -0,0 +1,341 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the courses that meet at the same time, i.e. the sections of a student's schedule that overlap, or the rooms booked twice in a catalog.
+ * <br>Usage: {@code --conflicts <schedule> [--rooms] [--terms FILE]}
+ * <br>Two courses conflict if their terms overlap, they share a weekday, and their times overlap on that day.
+ * Meetings that end when the next one starts do not conflict.
+ * <br>Instead of comparing every pair, the meetings of each weekday are sorted by their start and swept once, keeping only the meetings
+ * that have not ended yet. Finding every conflict takes O(n log n + k), where k is the number of pairs that overlap in time on a shared day.
+ * A pair that shares several days is only reported once, on the first day they share.
+ * <br>Can be reused, but not by several threads at once, since it keeps the number of courses skipped by the last check.
+ */
+public class ConflictDetector {
+	private static final int WEEKDAY_COUNT = 5;
+
+	/**
+	 * Two courses that meet at the same time
+	 */
+	public static final class Conflict {
+		private final Course first;
+		private final Course second;
+		private final int days;
+		private final int startMinute;
+		private final int endMinute;
+
+		/**
+		 * @param first       The course that comes first in the schedule
+		 * @param second      The course that comes later in the schedule
+		 * @param days        The bitmask of the days that both courses meet, as in {@link MeetingPattern#getDays()}
+		 * @param startMinute The start of the overlap in minutes since midnight
+		 * @param endMinute   The end of the overlap in minutes since midnight
+		 */
+		public Conflict(Course first, Course second, int days, int startMinute, int endMinute) {
+			this.first = first;
+			this.second = second;
+			this.days = days;
+			this.startMinute = startMinute;
+			this.endMinute = endMinute;
+		}
+
+		public Course getFirst() {
+			return first;
+		}
+
+		public Course getSecond() {
+			return second;
+		}
+
+		/**
+		 * @return The bitmask of the days that both courses meet, made of {@link MeetingPattern#MONDAY} through {@link MeetingPattern#FRIDAY}
+		 */
+		public int getDays() {
+			return days;
+		}
+
+		/**
+		 * @return The start of the overlap in minutes since midnight
+		 */
+		public int getStartMinute() {
+			return startMinute;
+		}
+
+		/**
+		 * @return The end of the overlap in minutes since midnight
+		 */
+		public int getEndMinute() {
+			return endMinute;
+		}
+
+		@Override
+		public String toString() {
+			return first.getCourse() + " (" + first.getLocation() + ") conflicts with " + second.getCourse() + " (" + second.getLocation() + ") on "
+					+ MeetingPattern.getByDay(days) + " from " + ConflictDetector.formatMinute(startMinute) + " to " + ConflictDetector.formatMinute(endMinute);
+		}
+	}
+
+	private final TermRegistry termRegistry;
+	private int skippedCourses;
+
+	/**
+	 * @param termRegistry The dates of the terms, which decide whether the terms of two courses overlap
+	 */
+	public ConflictDetector(TermRegistry termRegistry) {
+		this.termRegistry = termRegistry;
+	}
+
+	/**
+	 * Checks a schedule for conflicts, i.e. the sections a student is registered for
+	 *
+	 * @param courses The courses to check
+	 * @return Every pair of courses that meet at the same time, in the order of their first and then their second course
+	 */
+	public List<Conflict> findConflicts(List<Course> courses) {
+		Meetings meetings = new Meetings(courses);
+		List<int[]> pairs = new ArrayList<>();
+		int[] members = new int[courses.size()];
+		for (int i = 0; i < members.length; i++) {
+			members[i] = i;
+		}
+		meetings.sweep(members, members.length, pairs);
+		return meetings.toConflicts(pairs);
+	}
+
+	/**
+	 * Checks a catalog for rooms that are booked twice. Only courses in the same location are compared, and courses without a location are ignored
+	 *
+	 * @param courses The courses to check
+	 * @return Every pair of courses in the same location that meet at the same time, in the order of their first and then their second course
+	 */
+	public List<Conflict> findRoomConflicts(List<Course> courses) {
+		Meetings meetings = new Meetings(courses);
+		Map<String, List<Integer>> coursesByLocation = new HashMap<>();
+		for (int i = 0; i < courses.size(); i++) {
+			String location = courses.get(i).getLocation();
+			if (location != null && !location.isBlank()) {
+				coursesByLocation.computeIfAbsent(location, key -> new ArrayList<>()).add(i);
+			}
+		}
+		List<int[]> pairs = new ArrayList<>();
+		int[] members = new int[courses.size()];
+		for (List<Integer> locationCourses : coursesByLocation.values()) {
+			for (int i = 0; i < locationCourses.size(); i++) {
+				members[i] = locationCourses.get(i);
+			}
+			meetings.sweep(members, locationCourses.size(), pairs);
+		}
+		return meetings.toConflicts(pairs);
+	}
+
+	/**
+	 * @return The number of courses of the last check that could not be checked, since their meetings or their term could not be read
+	 */
+	public int getSkippedCourses() {
+		return skippedCourses;
+	}
+
+	/**
+	 * The days, times, and term dates of every course, in primitive arrays so that the sweep never reads a {@link Course}
+	 */
+	private final class Meetings {
+		private final List<Course> courses;
+		/**
+		 * The bitmask of the days of each course, or 0 if it cannot be checked
+		 */
+		private final int[] days;
+		private final int[] startMinutes;
+		private final int[] endMinutes;
+		private final long[] startEpochDays;
+		private final long[] endEpochDays;
+
+		/**
+		 * @param courses The courses to check
+		 */
+		private Meetings(List<Course> courses) {
+			this.courses = courses;
+			int courseCount = courses.size();
+			this.days = new int[courseCount];
+			this.startMinutes = new int[courseCount];
+			this.endMinutes = new int[courseCount];
+			this.startEpochDays = new long[courseCount];
+			this.endEpochDays = new long[courseCount];
+			int skipped = 0;
+			for (int i = 0; i < courseCount; i++) {
+				Course course = courses.get(i);
+				MeetingPattern meetingPattern = ConflictDetector.getMeetingPattern(course);
+				int span = TermCalendar.getSpanIndex(course.getTerm());
+				TermCalendar termCalendar = ConflictDetector.this.termRegistry.getCalendar(course.getParsedTerm());
+				if (meetingPattern == null || meetingPattern.getEndMinute() <= meetingPattern.getStartMinute()
+						|| span == -1 || termCalendar == null || !termCalendar.isDefined(span)) {
+					skipped++;
+					continue;
+				}
+				this.days[i] = meetingPattern.getDays();
+				this.startMinutes[i] = meetingPattern.getStartMinute();
+				this.endMinutes[i] = meetingPattern.getEndMinute();
+				this.startEpochDays[i] = termCalendar.getStartEpochDay(span);
+				this.endEpochDays[i] = termCalendar.getEndEpochDay(span);
+			}
+			ConflictDetector.this.skippedCourses = skipped;
+		}
+
+		/**
+		 * Finds the conflicts between the given courses by sweeping the meetings of each weekday in the order of their start
+		 *
+		 * @param members     The indices of the courses to compare with each other
+		 * @param memberCount The number of indices in {@code members}
+		 * @param pairs       Receives the indices of the courses of each conflict, the lower index first
+		 */
+		private void sweep(int[] members, int memberCount, List<int[]> pairs) {
+			long[] meetingsOfDay = new long[memberCount];
+			int[] active = new int[memberCount];
+			for (int weekday = 0; weekday < WEEKDAY_COUNT; weekday++) {
+				int day = 1 << weekday;
+				// The start of each meeting in the high half and the course in the low half, so that sorting them sorts by start
+				int meetingCount = 0;
+				for (int m = 0; m < memberCount; m++) {
+					int i = members[m];
+					if ((this.days[i] & day) != 0) {
+						meetingsOfDay[meetingCount++] = (long) this.startMinutes[i] << 32 | i;
+					}
+				}
+				Arrays.sort(meetingsOfDay, 0, meetingCount);
+
+				int activeCount = 0;
+				for (int m = 0; m < meetingCount; m++) {
+					int i = (int) meetingsOfDay[m];
+					int start = this.startMinutes[i];
+					// Every meeting still active started before this one, so it overlaps if it has not ended yet
+					int keptCount = 0;
+					for (int a = 0; a < activeCount; a++) {
+						int j = active[a];
+						if (this.endMinutes[j] > start) {
+							active[keptCount++] = j;
+							this.checkPair(i, j, day, pairs);
+						}
+					}
+					activeCount = keptCount;
+					active[activeCount++] = i;
+				}
+			}
+		}
+
+		/**
+		 * @param i     A course
+		 * @param j     A course that overlaps with {@code i} in time on {@code day}
+		 * @param day   The day being swept
+		 * @param pairs Receives the pair if their terms overlap
+		 */
+		private void checkPair(int i, int j, int day, List<int[]> pairs) {
+			int sharedDays = this.days[i] & this.days[j];
+			// Only the first shared day reports the pair
+			if (Integer.lowestOneBit(sharedDays) != day) {
+				return;
+			}
+			if (this.startEpochDays[i] > this.endEpochDays[j] || this.startEpochDays[j] > this.endEpochDays[i]) {
+				return;
+			}
+			pairs.add(new int[]{Math.min(i, j), Math.max(i, j)});
+		}
+
+		/**
+		 * @param pairs The indices of the courses of each conflict
+		 * @return The conflicts, in the order of their first and then their second course
+		 */
+		private List<Conflict> toConflicts(List<int[]> pairs) {
+			pairs.sort(Comparator.<int[]>comparingInt(pair -> pair[0]).thenComparingInt(pair -> pair[1]));
+			List<Conflict> conflicts = new ArrayList<>(pairs.size());
+			for (int[] pair : pairs) {
+				int i = pair[0];
+				int j = pair[1];
+				conflicts.add(new Conflict(this.courses.get(i), this.courses.get(j), this.days[i] & this.days[j],
+						Math.max(this.startMinutes[i], this.startMinutes[j]), Math.min(this.endMinutes[i], this.endMinutes[j])));
+			}
+			return conflicts;
+		}
+	}
+
+	/**
+	 * Runs the conflict mode from the command line arguments
+	 *
+	 * @param args The command line arguments, starting with {@code --conflicts}
+	 * @return The exit code. 0 if there are no conflicts, 1 if there are, and 2 if the arguments or the schedule are invalid
+	 */
+	public static int run(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: --conflicts <schedule> [--rooms] [--terms FILE]");
+			return 2;
+		}
+		File inputFile = new File(args[1]);
+		boolean rooms = false;
+		Path termsFile = null;
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].equals("--rooms")) {
+				rooms = true;
+			} else if (args[i].equals("--terms") && i + 1 < args.length) {
+				termsFile = Path.of(args[++i]);
+			} else {
+				System.err.println("Unknown argument: " + args[i]);
+				return 2;
+			}
+		}
+
+		// Get the terms, without ever waiting for the console
+		TermRegistry termRegistry;
+		try {
+			termRegistry = termsFile != null ? TermRegistry.read(termsFile) : TermRegistry.of(TermDateGetter.readTerms());
+		} catch (IOException e) {
+			System.err.println("Could not read the term dates: " + e);
+			return 2;
+		}
+
+		CourseTable courseTable = new CourseTable();
+		try {
+			ScheduleReader.parseFile(inputFile, courseTable);
+		} catch (Exception e) {
+			System.err.println("Could not read " + inputFile + ": " + e);
+			return 2;
+		}
+
+		ConflictDetector conflictDetector = new ConflictDetector(termRegistry);
+		long startTime = System.nanoTime();
+		List<Conflict> conflicts = rooms ? conflictDetector.findRoomConflicts(courseTable.asList()) : conflictDetector.findConflicts(courseTable.asList());
+		long elapsedNanos = System.nanoTime() - startTime;
+		for (Conflict conflict : conflicts) {
+			System.out.println(conflict);
+		}
+		System.out.printf("Found %d %s among %d courses in %.3f s, %d courses could not be checked%n", conflicts.size(),
+				rooms ? "double booked rooms" : "conflicts", courseTable.size(), elapsedNanos / 1e9, conflictDetector.getSkippedCourses());
+		return conflicts.isEmpty() ? 0 : 1;
+	}
+
+	/**
+	 * @param course A course
+	 * @return The days and times of the course, or null if its meetings cannot be parsed
+	 */
+	private static MeetingPattern getMeetingPattern(Course course) {
+		try {
+			return course.getMeetingPattern();
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param minuteOfDay The time in minutes since midnight
+	 * @return The time in the format of the meetings, i.e. {@code 10:00 AM}
+	 */
+	static String formatMinute(int minuteOfDay) {
+		int hour = minuteOfDay / 60 % 12;
+		int minute = minuteOfDay % 60;
+		return (hour == 0 ? 12 : hour) + ":" + (minute < 10 ? "0" : "") + minute + (minuteOfDay < 12 * 60 ? " AM" : " PM");
+	}
+}
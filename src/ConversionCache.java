@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps finished calendars so that a schedule that was already converted is never opened again.
+ * <br>A calendar is found by the hash of the bytes of its schedule and the term dates it was made with,
+ * so the same schedule converted with other term dates is a different entry.
+ * <br>Calendars are kept in memory, least recently used first out once the memory limit is reached,
+ * and optionally in a directory, oldest first out once the directory limit is reached.
+ * <br>Thread safe.
+ */
+public class ConversionCache {
+	/**
+	 * Converts a schedule into a calendar. Only called when the calendar is not in the cache
+	 */
+	public interface Converter {
+		/**
+		 * @param schedule The bytes of the schedule
+		 * @return The bytes of the calendar
+		 * @throws Exception Thrown if the schedule could not be converted
+		 */
+		byte[] convert(byte[] schedule) throws Exception;
+	}
+
+	private static final String CALENDAR_EXTENSION = ".ics";
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final long maxMemoryBytes;
+	private final Path directory;
+	private final long maxDirectoryBytes;
+
+	/**
+	 * The calendars in memory, in order of least to most recently used. Guarded by itself
+	 */
+	private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+	private long memoryBytes;
+	private final AtomicLong directoryBytes = new AtomicLong();
+	/**
+	 * The keys of the calendars being saved in the directory, so that a calendar converted by several threads at once is only saved and counted once
+	 */
+	private final Set<String> savingKeys = ConcurrentHashMap.newKeySet();
+	private final Object directoryEvictionLock = new Object();
+
+	private final AtomicLong memoryHits = new AtomicLong();
+	private final AtomicLong directoryHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong memoryEvictions = new AtomicLong();
+	private final AtomicLong directoryEvictions = new AtomicLong();
+
+	/**
+	 * Creates a cache that only keeps calendars in memory
+	 *
+	 * @param maxMemoryBytes The total size of the calendars kept in memory
+	 */
+	public ConversionCache(long maxMemoryBytes) {
+		this.maxMemoryBytes = maxMemoryBytes;
+		this.directory = null;
+		this.maxDirectoryBytes = 0;
+	}
+
+	/**
+	 * Creates a cache that keeps calendars in memory and in {@code directory}
+	 *
+	 * @param maxMemoryBytes    The total size of the calendars kept in memory
+	 * @param directory         The directory to keep calendars in. Created if it does not exist
+	 * @param maxDirectoryBytes The total size of the calendars kept in the directory
+	 * @throws IOException Thrown if the directory could not be created or read
+	 */
+	public ConversionCache(long maxMemoryBytes, Path directory, long maxDirectoryBytes) throws IOException {
+		this.maxMemoryBytes = maxMemoryBytes;
+		this.directory = Files.createDirectories(directory);
+		this.maxDirectoryBytes = maxDirectoryBytes;
+		// Count the calendars left from the previous runs
+		for (Path file : this.listCalendarFiles()) {
+			this.directoryBytes.addAndGet(Files.size(file));
+		}
+		this.evictFromDirectory();
+	}
+
+	/**
+	 * @param schedule The bytes of the schedule
+	 * @param terms    The term dates that the calendar is made with, as read by {@link TermDateGetter#getTerms()}
+	 * @return The key of the calendar of the schedule: the SHA-256 hash of the schedule and the term dates, in hex
+	 */
+	public static String getKey(byte[] schedule, int[] terms) {
+		MessageDigest messageDigest;
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every JDK has SHA-256
+			throw new IllegalStateException(e);
+		}
+		messageDigest.update(schedule);
+		ByteBuffer termBytes = ByteBuffer.allocate(terms.length * Integer.BYTES);
+		termBytes.asIntBuffer().put(terms);
+		messageDigest.update(termBytes);
+
+		byte[] hash = messageDigest.digest();
+		char[] key = new char[hash.length * 2];
+		for (int i = 0; i < hash.length; i++) {
+			key[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+			key[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+		}
+		return new String(key);
+	}
+
+	/**
+	 * Returns the calendar of the schedule from the cache, or converts the schedule and caches its calendar if it is not in the cache
+	 *
+	 * @param schedule  The bytes of the schedule
+	 * @param terms     The term dates that the calendar is made with
+	 * @param converter Converts the schedule if its calendar is not in the cache
+	 * @return The bytes of the calendar
+	 * @throws Exception Thrown if the schedule could not be converted. Nothing is cached
+	 */
+	public byte[] getOrConvert(byte[] schedule, int[] terms, Converter converter) throws Exception {
+		String key = ConversionCache.getKey(schedule, terms);
+		byte[] calendar = this.get(key);
+		if (calendar == null) {
+			calendar = converter.convert(schedule);
+			this.put(key, calendar);
+		}
+		return calendar;
+	}
+
+	/**
+	 * @param key The key of the calendar, from {@link ConversionCache#getKey(byte[], int[])}
+	 * @return The calendar, or null if it is not in the cache
+	 */
+	public byte[] get(String key) {
+		byte[] calendar;
+		synchronized (this.memory) {
+			calendar = this.memory.get(key);
+		}
+		if (calendar != null) {
+			this.memoryHits.incrementAndGet();
+			return calendar;
+		}
+
+		if (this.directory != null) {
+			Path file = this.getCalendarFile(key);
+			try {
+				calendar = Files.readAllBytes(file);
+				// Mark it as recently used, so it is evicted last
+				Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+				this.directoryHits.incrementAndGet();
+				this.putInMemory(key, calendar);
+				return calendar;
+			} catch (NoSuchFileException e) {
+				// Not in the directory either
+			} catch (IOException e) {
+				System.err.println("Could not read the cached calendar " + file + ": " + e);
+			}
+		}
+
+		this.misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * @param key      The key of the calendar, from {@link ConversionCache#getKey(byte[], int[])}
+	 * @param calendar The calendar
+	 */
+	public void put(String key, byte[] calendar) {
+		this.putInMemory(key, calendar);
+		if (this.directory != null) {
+			this.putInDirectory(key, calendar);
+		}
+	}
+
+	/**
+	 * @param key      The key of the calendar
+	 * @param calendar The calendar
+	 */
+	private void putInMemory(String key, byte[] calendar) {
+		if (calendar.length > this.maxMemoryBytes) {
+			return;
+		}
+		synchronized (this.memory) {
+			byte[] previous = this.memory.put(key, calendar);
+			this.memoryBytes += calendar.length - (previous != null ? previous.length : 0);
+			// Evict the least recently used calendars until the rest fit
+			Iterator<Map.Entry<String, byte[]>> iterator = this.memory.entrySet().iterator();
+			while (this.memoryBytes > this.maxMemoryBytes && iterator.hasNext()) {
+				this.memoryBytes -= iterator.next().getValue().length;
+				iterator.remove();
+				this.memoryEvictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Saves the calendar with {@link ICSWriter#saveCalendar(byte[], Path)}, so that a calendar is never read while it is only partly written
+	 *
+	 * @param key      The key of the calendar
+	 * @param calendar The calendar
+	 */
+	private void putInDirectory(String key, byte[] calendar) {
+		Path file = this.getCalendarFile(key);
+		if (calendar.length > this.maxDirectoryBytes || !this.savingKeys.add(key)) {
+			return;
+		}
+		try {
+			// Checked once no other thread can be saving it, so the file is saved and counted once
+			if (Files.exists(file)) {
+				return;
+			}
+			ICSWriter.saveCalendar(calendar, file);
+			this.directoryBytes.addAndGet(calendar.length);
+			this.evictFromDirectory();
+		} catch (IOException e) {
+			System.err.println("Could not cache the calendar " + file + ": " + e);
+		} finally {
+			this.savingKeys.remove(key);
+		}
+	}
+
+	/**
+	 * Deletes the least recently used calendars from the directory until the rest fit
+	 *
+	 * @throws IOException Thrown if the directory could not be read
+	 */
+	private void evictFromDirectory() throws IOException {
+		if (this.directoryBytes.get() <= this.maxDirectoryBytes) {
+			return;
+		}
+		synchronized (this.directoryEvictionLock) {
+			List<Path> files = this.listCalendarFiles();
+			Map<Path, FileTime> lastUsed = new LinkedHashMap<>();
+			for (Path file : files) {
+				lastUsed.put(file, Files.getLastModifiedTime(file));
+			}
+			files.sort(Comparator.comparing(lastUsed::get));
+			for (Path file : files) {
+				if (this.directoryBytes.get() <= this.maxDirectoryBytes) {
+					break;
+				}
+				long size = Files.size(file);
+				if (Files.deleteIfExists(file)) {
+					this.directoryBytes.addAndGet(-size);
+					this.directoryEvictions.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Every calendar in the directory
+	 * @throws IOException Thrown if the directory could not be read
+	 */
+	private List<Path> listCalendarFiles() throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(this.directory, "*" + CALENDAR_EXTENSION)) {
+			for (Path file : directoryStream) {
+				files.add(file);
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * @param key The key of the calendar
+	 * @return The file of the calendar in the directory
+	 */
+	private Path getCalendarFile(String key) {
+		return this.directory.resolve(key + CALENDAR_EXTENSION);
+	}
+
+	public long getMemoryHits() {
+		return memoryHits.get();
+	}
+
+	public long getDirectoryHits() {
+		return directoryHits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getMemoryEvictions() {
+		return memoryEvictions.get();
+	}
+
+	public long getDirectoryEvictions() {
+		return directoryEvictions.get();
+	}
+
+	/**
+	 * @return The hits, misses, and evictions of the cache
+	 */
+	@Override
+	public String toString() {
+		return "hits=" + (getMemoryHits() + getDirectoryHits()) + " (memory=" + getMemoryHits() + " directory=" + getDirectoryHits() + ")" +
+				" misses=" + getMisses() +
+				" evictions=" + (getMemoryEvictions() + getDirectoryEvictions()) + " (memory=" + getMemoryEvictions() + " directory=" + getDirectoryEvictions() + ")";
+	}
+}
@@ -0,0 +1,232 @@
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Measures each {@link ConversionStage} of every conversion: a {@link LatencyHistogram} of its durations, a count of the items it handled,
+ * and the errors by type. Published as the MXBean {@value #OBJECT_NAME} and as {@link ConversionStageEvent JFR events}.
+ * <br>Off by default, unless the system property {@code calendar.metrics} is {@code true}. While off, and while JFR does not record the events,
+ * a stage costs a single check of a flag and nothing is recorded.
+ * <br>Usage around a stage:
+ * <pre>
+ * long startNanos = ConversionMetrics.startStage();
+ * ...
+ * ConversionMetrics.endStage(ConversionStage.PARSE, startNanos, rowCount);
+ * </pre>
+ */
+public class ConversionMetrics implements ConversionMetricsMXBean {
+	public static final String OBJECT_NAME = "calendar:type=ConversionMetrics";
+
+	private static final ConversionStage[] STAGES = ConversionStage.values();
+	private static final ConversionMetrics INSTANCE = new ConversionMetrics();
+	/**
+	 * Only used to ask JFR whether the stage events are being recorded
+	 */
+	private static final ConversionStageEvent EVENT_PROBE = new ConversionStageEvent();
+
+	private static volatile boolean enabled = Boolean.getBoolean("calendar.metrics");
+
+	private final LatencyHistogram[] latencies = new LatencyHistogram[STAGES.length];
+	private final LongAdder[] items = new LongAdder[STAGES.length];
+	private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+	private ConversionMetrics() {
+		for (int i = 0; i < STAGES.length; i++) {
+			this.latencies[i] = new LatencyHistogram();
+			this.items[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @return The metrics of the program
+	 */
+	public static ConversionMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @return The time that the stage started, to pass to {@link ConversionMetrics#endStage(ConversionStage, long, long)},
+	 * or 0 if nothing measures it
+	 */
+	public static long startStage() {
+		return enabled || EVENT_PROBE.isEnabled() ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the duration and the items of a stage that ended
+	 *
+	 * @param stage      The stage
+	 * @param startNanos The time from {@link ConversionMetrics#startStage()}
+	 * @param itemCount  The number of items that the stage handled, as described by each {@link ConversionStage}
+	 */
+	public static void endStage(ConversionStage stage, long startNanos, long itemCount) {
+		if (startNanos == 0) {
+			return;
+		}
+		long durationNanos = System.nanoTime() - startNanos;
+		if (enabled) {
+			INSTANCE.latencies[stage.ordinal()].record(durationNanos);
+			INSTANCE.items[stage.ordinal()].add(itemCount);
+		}
+		ConversionStageEvent event = new ConversionStageEvent();
+		if (event.isEnabled()) {
+			event.stage = stage.getLabel();
+			event.items = itemCount;
+			event.stageDuration = durationNanos;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Counts an error by its type
+	 *
+	 * @param error The error that ended a conversion
+	 */
+	public static void recordError(Throwable error) {
+		if (enabled) {
+			INSTANCE.errors.computeIfAbsent(error.getClass().getSimpleName(), type -> new LongAdder()).increment();
+		}
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server, once
+	 */
+	public static void registerMBean() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+		} catch (InstanceAlreadyExistsException e) {
+			// Already registered
+		} catch (JMException e) {
+			System.err.println("Could not register the conversion metrics with JMX: " + e);
+		}
+	}
+
+	/**
+	 * @return True if the stages are being measured
+	 */
+	public static boolean isMeasuring() {
+		return enabled;
+	}
+
+	/**
+	 * @param measuring True to measure the stages from now on
+	 */
+	public static void setMeasuring(boolean measuring) {
+		enabled = measuring;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		ConversionMetrics.setMeasuring(enabled);
+	}
+
+	/**
+	 * @param stage The stage
+	 * @return The durations of the stage
+	 */
+	public LatencyHistogram getLatencies(ConversionStage stage) {
+		return this.latencies[stage.ordinal()];
+	}
+
+	/**
+	 * @param stage The stage
+	 * @return The number of items that the stage handled
+	 */
+	public long getItems(ConversionStage stage) {
+		return this.items[stage.ordinal()].sum();
+	}
+
+	@Override
+	public Map<String, Long> getStageCounts() {
+		Map<String, Long> stageCounts = new LinkedHashMap<>();
+		for (ConversionStage stage : STAGES) {
+			stageCounts.put(stage.getLabel(), this.getLatencies(stage).getCount());
+		}
+		return stageCounts;
+	}
+
+	@Override
+	public Map<String, Double> getStageMeanMillis() {
+		return this.getStageMillis(LatencyHistogram::getMean);
+	}
+
+	@Override
+	public Map<String, Double> getStageP50Millis() {
+		return this.getStageMillis(latencyHistogram -> latencyHistogram.getPercentile(50));
+	}
+
+	@Override
+	public Map<String, Double> getStageP99Millis() {
+		return this.getStageMillis(latencyHistogram -> latencyHistogram.getPercentile(99));
+	}
+
+	@Override
+	public Map<String, Double> getStageMaxMillis() {
+		return this.getStageMillis(LatencyHistogram::getMax);
+	}
+
+	/**
+	 * @param nanos Reads a duration in nanoseconds from the histogram of a stage
+	 * @return The duration of each stage in milliseconds, by stage
+	 */
+	private Map<String, Double> getStageMillis(ToDoubleFunction<LatencyHistogram> nanos) {
+		Map<String, Double> stageMillis = new LinkedHashMap<>();
+		for (ConversionStage stage : STAGES) {
+			stageMillis.put(stage.getLabel(), nanos.applyAsDouble(this.getLatencies(stage)) / 1e6);
+		}
+		return stageMillis;
+	}
+
+	@Override
+	public long getRowCount() {
+		return this.getItems(ConversionStage.PARSE);
+	}
+
+	@Override
+	public long getEventCount() {
+		return this.getItems(ConversionStage.GENERATE);
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return this.getItems(ConversionStage.WRITE);
+	}
+
+	@Override
+	public long getRepairCount() {
+		return this.getItems(ConversionStage.REPAIR);
+	}
+
+	@Override
+	public Map<String, Long> getErrorCounts() {
+		Map<String, Long> errorCounts = new TreeMap<>();
+		this.errors.forEach((type, count) -> errorCounts.put(type, count.sum()));
+		return errorCounts;
+	}
+
+	/**
+	 * @return A line for each stage with its latencies and items, followed by the errors
+	 */
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (ConversionStage stage : STAGES) {
+			text.append(stage.getLabel()).append(' ').append(this.getLatencies(stage))
+					.append(" items=").append(this.getItems(stage)).append('\n');
+		}
+		text.append("errors ").append(this.getErrorCounts()).append('\n');
+		return text.toString();
+	}
+}
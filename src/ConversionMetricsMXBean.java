@@ -0,0 +1,48 @@
+import java.util.Map;
+
+/**
+ * The management interface of {@link ConversionMetrics}, published as {@value ConversionMetrics#OBJECT_NAME} so it can be read with JConsole or any JMX client
+ */
+public interface ConversionMetricsMXBean {
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	/**
+	 * @return The number of times that each stage ran, by stage
+	 */
+	Map<String, Long> getStageCounts();
+
+	/**
+	 * @return The average duration of each stage in milliseconds, by stage
+	 */
+	Map<String, Double> getStageMeanMillis();
+
+	/**
+	 * @return The median duration of each stage in milliseconds, by stage
+	 */
+	Map<String, Double> getStageP50Millis();
+
+	/**
+	 * @return The 99th percentile duration of each stage in milliseconds, by stage
+	 */
+	Map<String, Double> getStageP99Millis();
+
+	/**
+	 * @return The longest duration of each stage in milliseconds, by stage
+	 */
+	Map<String, Double> getStageMaxMillis();
+
+	long getRowCount();
+
+	long getEventCount();
+
+	long getBytesWritten();
+
+	long getRepairCount();
+
+	/**
+	 * @return The number of errors by the simple name of their exception
+	 */
+	Map<String, Long> getErrorCounts();
+}
@@ -0,0 +1,349 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts uploaded schedules into calendars over HTTP, so that the program is started once and reused instead of started for every schedule.
+ * <br>Only listens on localhost. Each request is handled on its own virtual thread when the JDK supports them.
+ * <br>Usage: {@code --serve [--port 8080] [--max-upload-bytes 10485760] [--max-repairs 2] [--cache-bytes 67108864] [--cache-dir DIR] [--cache-dir-bytes 1073741824] [--terms FILE] [--zone ZONE] [--campus-zone PREFIX=ZONE] [--metrics]}
+ * <br>With {@code --metrics}, every stage of the conversions is measured with {@link ConversionMetrics}, which is added to {@code /metrics}.
+ * <br>With {@code --terms}, the dates of the terms are taken from a {@link TermRegistry} that is reloaded whenever its file changes.
+ * Otherwise they are taken from the dates saved by {@link TermDateGetter#getTerms()}. The server never asks for them on the console.
+ * <br>With {@code --zone} and {@code --campus-zone}, the times of the courses are in those zones, as in {@link BatchConverter}.
+ * <ul>
+ *     <li>{@code POST /convert} with an XLSX or CSV schedule as the body returns the calendar as {@code text/calendar}.
+ *     A schedule that was already converted is answered from the {@link ConversionCache} without opening it</li>
+ *     <li>{@code GET /metrics} returns the latency percentiles of each endpoint, the repair counts, and the cache counts</li>
+ * </ul>
+ */
+public class ConversionServer {
+	private static final String USAGE = "Usage: --serve [--port 8080] [--max-upload-bytes 10485760] [--max-repairs 2] [--cache-bytes 67108864] [--cache-dir DIR]"
+			+ " [--cache-dir-bytes 1073741824] [--terms FILE] [--zone ZONE] [--campus-zone PREFIX=ZONE] [--metrics]";
+	private static final int DEFAULT_PORT = 8080;
+	private static final long DEFAULT_MAX_UPLOAD_BYTES = 10L * 1024 * 1024;
+	private static final int DEFAULT_MAX_REPAIRS = 2;
+	private static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+	private static final long DEFAULT_CACHE_DIRECTORY_BYTES = 1024L * 1024 * 1024;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final long maxUploadBytes;
+	private final ConversionCache conversionCache;
+	private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+
+	/**
+	 * @param port           The port to listen on, or 0 for any free port
+	 * @param maxUploadBytes The largest schedule that can be uploaded
+	 * @throws IOException Thrown if the port could not be bound
+	 */
+	public ConversionServer(int port, long maxUploadBytes) throws IOException {
+		this(port, maxUploadBytes, null);
+	}
+
+	/**
+	 * @param port            The port to listen on, or 0 for any free port
+	 * @param maxUploadBytes  The largest schedule that can be uploaded
+	 * @param conversionCache Where to keep the converted calendars, or null to convert every upload
+	 * @throws IOException Thrown if the port could not be bound
+	 */
+	public ConversionServer(int port, long maxUploadBytes, ConversionCache conversionCache) throws IOException {
+		this.maxUploadBytes = maxUploadBytes;
+		this.conversionCache = conversionCache;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.executor = ConversionServer.newRequestExecutor();
+		this.server.setExecutor(this.executor);
+		this.addEndpoint("/convert", this::handleConvert);
+		this.addEndpoint("/metrics", this::handleMetrics);
+	}
+
+	/**
+	 * Runs the server from the command line arguments until the program is stopped
+	 *
+	 * @param args The command line arguments, starting with {@code --serve}
+	 * @return The exit code. 2 if the arguments are invalid, otherwise the server keeps running
+	 */
+	public static int run(String[] args) {
+		int port = DEFAULT_PORT;
+		long maxUploadBytes = DEFAULT_MAX_UPLOAD_BYTES;
+		int maxRepairs = DEFAULT_MAX_REPAIRS;
+		long cacheBytes = DEFAULT_CACHE_BYTES;
+		Path cacheDirectory = null;
+		long cacheDirectoryBytes = DEFAULT_CACHE_DIRECTORY_BYTES;
+		Path termsFile = null;
+		ZoneId zone = ICSTimeZone.DEFAULT_ZONE;
+		Map<String, ZoneId> campusZones = new LinkedHashMap<>();
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("--metrics")) {
+				ConversionMetrics.setMeasuring(true);
+				ConversionMetrics.registerMBean();
+				continue;
+			}
+			if (i + 1 >= args.length) {
+				System.err.println("Missing a value for " + args[i]);
+				System.err.println(USAGE);
+				return 2;
+			}
+			try {
+				switch (args[i]) {
+					case "--port" -> port = Integer.parseInt(args[++i]);
+					case "--max-upload-bytes" -> maxUploadBytes = Long.parseLong(args[++i]);
+					case "--max-repairs" -> maxRepairs = Integer.parseInt(args[++i]);
+					case "--cache-bytes" -> cacheBytes = Long.parseLong(args[++i]);
+					case "--cache-dir" -> cacheDirectory = Path.of(args[++i]);
+					case "--cache-dir-bytes" -> cacheDirectoryBytes = Long.parseLong(args[++i]);
+					case "--terms" -> termsFile = Path.of(args[++i]);
+					case "--zone" -> {
+						zone = ICSTimeZone.parseZone(args[++i]);
+						if (zone == null) {
+							return 2;
+						}
+					}
+					case "--campus-zone" -> {
+						if (!ICSTimeZone.putCampusZone(campusZones, args[++i])) {
+							return 2;
+						}
+					}
+					default -> {
+						System.err.println("Unknown argument: " + args[i]);
+						System.err.println(USAGE);
+						return 2;
+					}
+				}
+			} catch (NumberFormatException e) {
+				System.err.println("Invalid number for " + args[i - 1] + ": " + args[i]);
+				System.err.println(USAGE);
+				return 2;
+			}
+		}
+		if (port < 0 || port > 65535 || maxUploadBytes < 1 || maxRepairs < 0 || cacheBytes < 0 || cacheDirectoryBytes < 0) {
+			System.err.println("The port must be from 0 to 65535, the upload limit must be positive, and the other numbers must not be negative.");
+			System.err.println(USAGE);
+			return 2;
+		}
+
+		XLSXReader.setMaxConcurrentRepairs(maxRepairs);
+		// Set before the terms, which keep the zones whenever they are reloaded
+		CalendarEntryGenerator.setZones(zone, campusZones);
+		try {
+			// Get the terms, without ever waiting for the console
+			if (termsFile != null) {
+				// Every reload is used by the requests that start afterward. The watcher stops with the program
+				new TermRegistryWatcher(termsFile, CalendarEntryGenerator::setTermRegistry);
+			} else {
+				CalendarEntryGenerator.setTerms(TermDateGetter.readTerms());
+			}
+		} catch (IOException e) {
+			System.err.println("Could not read the term dates: " + e);
+			return 2;
+		}
+
+		try {
+			ConversionCache conversionCache = cacheDirectory == null ? new ConversionCache(cacheBytes)
+					: new ConversionCache(cacheBytes, cacheDirectory, cacheDirectoryBytes);
+			ConversionServer conversionServer = new ConversionServer(port, maxUploadBytes, conversionCache);
+			conversionServer.start();
+			Runtime.getRuntime().addShutdownHook(new Thread(conversionServer::stop));
+			System.out.println("Listening on http://" + conversionServer.getAddress().getHostString() + ":" + conversionServer.getAddress().getPort());
+		} catch (IOException e) {
+			System.err.println("An error has occurred while starting the server.");
+			e.printStackTrace();
+			return 1;
+		}
+		// The server keeps the program running
+		return 0;
+	}
+
+	/**
+	 * @return An executor that runs every request on a new virtual thread, or on a cached thread pool if the JDK does not have virtual threads
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			// Executors#newVirtualThreadPerTaskExecutor is only available from Java 21
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Adds an endpoint whose latency is recorded in its own histogram
+	 *
+	 * @param path    The path of the endpoint
+	 * @param handler The handler of the endpoint
+	 */
+	private void addEndpoint(String path, HttpHandler handler) {
+		LatencyHistogram latencyHistogram = new LatencyHistogram();
+		this.latencies.put(path, latencyHistogram);
+		this.server.createContext(path, exchange -> {
+			long startTime = System.nanoTime();
+			try (exchange) {
+				handler.handle(exchange);
+			} finally {
+				latencyHistogram.record(System.nanoTime() - startTime);
+			}
+		});
+	}
+
+	public void start() {
+		this.server.start();
+	}
+
+	/**
+	 * Stops accepting requests, waits a second for the running requests to finish, and stops the server
+	 */
+	public void stop() {
+		this.server.stop(1);
+		this.executor.shutdown();
+		try {
+			this.executor.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return The address that the server is listening on
+	 */
+	public InetSocketAddress getAddress() {
+		return this.server.getAddress();
+	}
+
+	/**
+	 * @param exchange The request with an XLSX or CSV schedule as its body
+	 * @throws IOException Thrown if the response could not be sent
+	 */
+	private void handleConvert(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("POST")) {
+			ConversionServer.sendText(exchange, 405, "Use POST with the XLSX or CSV schedule as the body.");
+			return;
+		}
+		String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (contentLength != null) {
+			long declaredBytes;
+			try {
+				declaredBytes = Long.parseLong(contentLength.trim());
+			} catch (NumberFormatException e) {
+				declaredBytes = -1;
+			}
+			if (declaredBytes < 0) {
+				ConversionServer.sendText(exchange, 400, "Invalid Content-Length: " + contentLength);
+				return;
+			}
+			if (declaredBytes > this.maxUploadBytes) {
+				ConversionServer.sendText(exchange, 413, "The schedule is larger than " + this.maxUploadBytes + " bytes.");
+				return;
+			}
+		}
+		byte[] upload = ConversionServer.readLimited(exchange.getRequestBody(), this.maxUploadBytes);
+		if (upload == null) {
+			ConversionServer.sendText(exchange, 413, "The schedule is larger than " + this.maxUploadBytes + " bytes.");
+			return;
+		}
+
+		// The calendar is completed before anything is sent, so that an error can still be reported with its status code
+		// The dates are taken once, so that a reload during the request does not change them halfway through
+		CalendarEngine engine = CalendarEntryGenerator.getEngine();
+		byte[] calendar;
+		try {
+			if (this.conversionCache != null) {
+				calendar = this.conversionCache.getOrConvert(upload, engine.getCacheKey(), schedule -> ConversionServer.convert(schedule, engine));
+			} else {
+				calendar = ConversionServer.convert(upload, engine);
+			}
+		} catch (Exception e) {
+			ConversionMetrics.recordError(e);
+			ConversionServer.sendText(exchange, 422, "The schedule could not be converted: " + e.getMessage());
+			return;
+		}
+
+		exchange.getResponseHeaders().set("Content-Type", "text/calendar; charset=utf-8");
+		exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"calendar.ics\"");
+		exchange.sendResponseHeaders(200, calendar.length);
+		try (OutputStream responseBody = exchange.getResponseBody()) {
+			responseBody.write(calendar);
+		}
+	}
+
+	/**
+	 * @param upload The XLSX or CSV schedule
+	 * @param engine Generates the calendar
+	 * @return The bytes of the calendar
+	 * @throws Exception Thrown if the schedule could not be converted
+	 */
+	private static byte[] convert(byte[] upload, CalendarEngine engine) throws Exception {
+		CourseTable courseTable = new CourseTable();
+		ScheduleReader.parseBytes(upload, courseTable);
+		return engine.toByteArray(courseTable.asList());
+	}
+
+	/**
+	 * @param exchange The request for the metrics
+	 * @throws IOException Thrown if the response could not be sent
+	 */
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+		StringBuilder metrics = new StringBuilder();
+		for (Map.Entry<String, LatencyHistogram> latency : this.latencies.entrySet()) {
+			metrics.append(latency.getKey()).append(' ').append(latency.getValue()).append('\n');
+		}
+		metrics.append("workbooks opened=").append(XLSXReader.getOpenCount())
+				.append(" repaired=").append(XLSXReader.getRepairCount()).append('\n');
+		if (this.conversionCache != null) {
+			metrics.append("cache ").append(this.conversionCache).append('\n');
+		}
+		if (ConversionMetrics.isMeasuring()) {
+			metrics.append(ConversionMetrics.getInstance());
+		}
+		ConversionServer.sendText(exchange, 200, metrics.toString());
+	}
+
+	/**
+	 * @param inputStream The stream to read
+	 * @param limit       The maximum number of bytes to read
+	 * @return Every byte of the stream, or null if there are more than {@code limit} bytes
+	 * @throws IOException Thrown if the stream could not be read
+	 */
+	private static byte[] readLimited(InputStream inputStream, long limit) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		long total = 0;
+		int read;
+		while ((read = inputStream.read(buffer)) != -1) {
+			total += read;
+			if (total > limit) {
+				return null;
+			}
+			bytes.write(buffer, 0, read);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param exchange   The request to respond to
+	 * @param statusCode The status code of the response
+	 * @param text       The body of the response
+	 * @throws IOException Thrown if the response could not be sent
+	 */
+	private static void sendText(HttpExchange exchange, int statusCode, String text) throws IOException {
+		byte[] body = (text + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(statusCode, body.length);
+		try (OutputStream responseBody = exchange.getResponseBody()) {
+			responseBody.write(body);
+		}
+	}
+}
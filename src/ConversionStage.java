@@ -0,0 +1,38 @@
+/**
+ * The stages of a conversion that {@link ConversionMetrics} measures. A stage may run inside another one, i.e. building happens while parsing
+ */
+public enum ConversionStage {
+	/**
+	 * Repairing a workbook that POI cannot read with aspose-cells. Counts the repaired workbooks
+	 */
+	REPAIR("repair"),
+	/**
+	 * Reading a sheet into courses. Counts the rows read
+	 */
+	PARSE("parse"),
+	/**
+	 * Building a course from the cells of its row. Counts the courses built
+	 */
+	BUILD("build"),
+	/**
+	 * Generating the event of a course. Counts the events generated
+	 */
+	GENERATE("generate"),
+	/**
+	 * Encoding the calendar and writing it out. Counts the bytes written
+	 */
+	WRITE("write");
+
+	private final String label;
+
+	ConversionStage(String label) {
+		this.label = label;
+	}
+
+	/**
+	 * @return The name of the stage as it is shown in the metrics
+	 */
+	public String getLabel() {
+		return label;
+	}
+}
@@ -0,0 +1,28 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A JFR event committed every time that a {@link ConversionStage} ends, so conversions can be watched with JDK Mission Control or {@code jfr print}.
+ * <br>Only recorded while a recording enables {@code calendar.ConversionStage}, i.e. {@code -XX:StartFlightRecording:settings=profile}
+ */
+@Name("calendar.ConversionStage")
+@Label("Conversion Stage")
+@Category({"Calendar", "Conversion"})
+@Description("A stage of converting a schedule into a calendar")
+@StackTrace(false)
+class ConversionStageEvent extends jdk.jfr.Event {
+	@Label("Stage")
+	String stage;
+
+	@Label("Items")
+	@Description("The rows, courses, events, or bytes that the stage handled, depending on the stage")
+	long items;
+
+	@Label("Stage Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long stageDuration;
+}
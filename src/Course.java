@@ -1,5 +1,6 @@
 public class Course {
 	private String term;
+	private Term parsedTerm;
 	private String course;
 	private String format;
 	private String meetings;
@@ -7,6 +8,7 @@ public class Course {
 	private String instructor;
 	private String delivery;
 	private String displayName;
+	private MeetingPattern meetingPattern;
 	private boolean isSemester;
 
 	public Course() {
@@ -32,12 +34,41 @@ public class Course {
 		this.term = term;
 	}
 
+	/**
+	 * @return The term with its year and season, or null if it could not be parsed
+	 */
+	public Term getParsedTerm() {
+		return parsedTerm;
+	}
+
+	public void setParsedTerm(Term parsedTerm) {
+		this.parsedTerm = parsedTerm;
+	}
+
 	public String getCourse() {
 		return course;
 	}
 
 	public void setCourse(String course) {
 		this.course = course;
+		this.displayName = null;
+	}
+
+	/**
+	 * @return The subject, number, and section of the course, i.e. {@code CS 1101-L01} for {@code CS 1101-L01 - Introduction to Program Design}
+	 */
+	public String getSection() {
+		return Course.computeSection(course);
+	}
+
+	/**
+	 * @param course The course, i.e. {@code CS 1101-L01 - Introduction to Program Design}
+	 * @return The subject, number, and section of the course, i.e. {@code CS 1101-L01}, or null if there is no course
+	 */
+	static String computeSection(String course) {
+		if (course == null) return null;
+		int titleIndex = course.indexOf(" - ");
+		return titleIndex == -1 ? course : course.substring(0, titleIndex);
 	}
 
 	public String getFormat() {
@@ -46,6 +77,7 @@ public class Course {
 
 	public void setFormat(String format) {
 		this.format = format;
+		this.displayName = null;
 	}
 
 	public String getMeetings() {
@@ -54,6 +86,7 @@ public class Course {
 
 	public void setMeetings(String meetings) {
 		this.meetings = meetings;
+		this.meetingPattern = null;
 	}
 
 	public String getLocation() {
@@ -80,7 +113,29 @@ public class Course {
 		this.delivery = delivery;
 	}
 
+	/**
+	 * @return The name of the course shown in the calendar. Only computed the first time it is needed
+	 */
 	public String getDisplayName() {
+		if (displayName == null) {
+			displayName = computeDisplayName();
+		}
+		return displayName;
+	}
+
+	/**
+	 * @return The name of the course shown in the calendar, computed from the course and the format
+	 */
+	private String computeDisplayName() {
+		return Course.computeDisplayName(course, format);
+	}
+
+	/**
+	 * @param course The course, i.e. {@code CS 1101-L01 - Introduction to Program Design}
+	 * @param format The format, i.e. {@code Laboratory}
+	 * @return The name of the course shown in the calendar
+	 */
+	static String computeDisplayName(String course, String format) {
 		if (format == null || course == null) return null;
 		String newDisplayName = course.substring(0, course.indexOf('-'));
 
@@ -99,6 +154,21 @@ public class Course {
 		this.displayName = displayName;
 	}
 
+	/**
+	 * @return The days and times of the meetings. Only parsed the first time it is needed
+	 * @throws RuntimeException Thrown if the meetings cannot be parsed
+	 */
+	public MeetingPattern getMeetingPattern() {
+		if (meetingPattern == null) {
+			meetingPattern = MeetingPattern.parse(meetings);
+		}
+		return meetingPattern;
+	}
+
+	public void setMeetingPattern(MeetingPattern meetingPattern) {
+		this.meetingPattern = meetingPattern;
+	}
+
 	/**
 	 * The ICS format of {@code BYDAY}:<br>
 	 * {@code BYDAY=MO,TU,WE,TH,FR}
@@ -107,18 +177,7 @@ public class Course {
 	 * @return The days of the course following the ICS format of {@code BYDAY}
 	 */
 	public String getDays() {
-		String days = meetings.substring(0, meetings.indexOf('|') - 1);
-		if (days.contains("S")) {
-			throw new RuntimeException("Error! There is either a Saturday or a Sunday within the meeting dates, which is unsupported.");
-		}
-
-		days = days.replace('-', ',');
-		days = days.replace("M", "MO");
-		days = days.replace("T", "TU");
-		days = days.replace("W", "WE");
-		days = days.replace("R", "TH");
-		days = days.replace("F", "FR");
-		return days;
+		return getMeetingPattern().getByDay();
 	}
 
 	/**
@@ -128,18 +187,7 @@ public class Course {
 	 * @return The start time in the ICS format
 	 */
 	public String getStartTime() {
-		// Get the start time of the course with AM/PM included
-		String startTime = meetings.substring(meetings.indexOf('|') + 2, meetings.lastIndexOf('-') - 1);
-		int hour = Integer.parseInt(startTime.substring(0, startTime.indexOf(':')));
-		int minute = Integer.parseInt(startTime.substring(startTime.indexOf(':') + 1, (startTime.indexOf("A") > 0 ? startTime.indexOf("A") : startTime.indexOf("P")) - 1));
-		if (!startTime.contains("A")) {
-			// It is PM so turn into military time
-			hour += 12;
-			// 12 PM is 12 and not 24
-			if (hour == 24) hour = 12;
-		}
-
-		return String.valueOf(hour >= 10 ? hour : "0" + hour) + (minute > 0 ? minute : "00") + "00";
+		return MeetingPattern.formatTime(getMeetingPattern().getStartMinute());
 	}
 
 	/**
@@ -149,18 +197,7 @@ public class Course {
 	 * @return The end time in the ICS format
 	 */
 	public String getEndTime() {
-		// Get the end time of the course with AM/PM included
-		String endTime = meetings.substring(meetings.lastIndexOf('-') + 2);
-		int hour = Integer.parseInt(endTime.substring(0, endTime.indexOf(':')));
-		int minute = Integer.parseInt(endTime.substring(endTime.indexOf(':') + 1, (endTime.indexOf("A") > 0 ? endTime.indexOf("A") : endTime.indexOf("P")) - 1));
-		if (!endTime.contains("A")) {
-			// It is PM so turn into military time
-			hour += 12;
-			// 12 PM is 12 and not 24
-			if (hour == 24) hour = 12;
-		}
-
-		return String.valueOf(hour >= 10 ? hour : "0" + hour) + (minute > 0 ? minute : "00") + "00";
+		return MeetingPattern.formatTime(getMeetingPattern().getEndMinute());
 	}
 
 	public boolean isSemester() {
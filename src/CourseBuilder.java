@@ -2,7 +2,10 @@ public class CourseBuilder {
 	private final Course aCourse = new Course();
 
 	public CourseBuilder setTerm(String term) {
-		aCourse.setTerm(CourseBuilder.cleanTerm(term));
+		// The term is parsed once per distinct term, then taken from the cache of TermParser
+		Term parsedTerm = TermParser.parse(term);
+		aCourse.setTerm(parsedTerm != null ? parsedTerm.getKey() : null);
+		aCourse.setParsedTerm(parsedTerm);
 		return this;
 	}
 
@@ -13,7 +16,6 @@ public class CourseBuilder {
 
 	public CourseBuilder setFormat(String format) {
 		aCourse.setFormat(format);
-		aCourse.setDisplayName(aCourse.getDisplayName());
 		return this;
 	}
 
@@ -37,25 +39,15 @@ public class CourseBuilder {
 		return this;
 	}
 
-	private static String cleanTerm(String uncleanedTerm) {
-		// uncleaned term format is:
-		// YYYY Semester TERM Term
-		// i.e. 2023 Fall A Term
-		// Or
-		// YYYY SEMESTER Semester
-
-		if (uncleanedTerm.matches("\\d{4} \\w* . Term")) {
-			// 4 Digits, space, N word characters, space, single character, space, "Term"
-			return uncleanedTerm.substring(uncleanedTerm.length() - 6, uncleanedTerm.length() - 5);
-		} else if (uncleanedTerm.matches("\\d{4} \\w* Semester")) {
-			// 4 Digits, space, N word characters, space, "Semester"
-			// Remove the 4 digits, space, and semester
-			return uncleanedTerm.replaceFirst("\\sSemester", "").replaceFirst("\\d{4}\\s", "");
-		}
-		return null;
-	}
-
+	/**
+	 * Parses the meetings and the display name once, so that they never have to be parsed again when the course is read
+	 *
+	 * @return The built course
+	 */
 	public Course toCourse() {
+		// Invalid meetings are left unparsed so that the error is thrown when they are used, the same as before
+		aCourse.setMeetingPattern(MeetingPattern.tryParse(aCourse.getMeetings()));
+		aCourse.setDisplayName(aCourse.getDisplayName());
 		return aCourse;
 	}
 
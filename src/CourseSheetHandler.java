@@ -0,0 +1,111 @@
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Receives the rows of a sheet from POI's event model and turns each of them into a {@link Course}, or adds each of them to a {@link CourseTable}.
+ * <br>Only the current row is held in memory. As soon as a row ends, its {@link Course} is handed to the consumer and the row is dropped.
+ */
+public class CourseSheetHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+	/**
+	 * The number of cells in a row that hold course data
+	 */
+	private static final int COLUMN_COUNT = 7;
+
+	private final Consumer<Course> consumer;
+	private final CourseTable courseTable;
+	/**
+	 * The values of the cells of the current row, reused for every row
+	 */
+	private final String[] cells = new String[COLUMN_COUNT];
+	private int cellIndex;
+	private boolean firstRowFlag = true;
+	private int rowCount;
+	/**
+	 * The number of complete rows read since the sheet was last started
+	 */
+	private int readRows;
+
+	/**
+	 * @param consumer Where each course is sent once its row has been read
+	 */
+	public CourseSheetHandler(Consumer<Course> consumer) {
+		this.consumer = consumer;
+		this.courseTable = null;
+	}
+
+	/**
+	 * @param courseTable Where each row is added once it has been read, without creating a {@link Course}
+	 */
+	public CourseSheetHandler(CourseTable courseTable) {
+		this.consumer = null;
+		this.courseTable = courseTable;
+	}
+
+	@Override
+	public void startRow(int rowNum) {
+		Arrays.fill(this.cells, null);
+		this.cellIndex = 0;
+	}
+
+	@Override
+	public void endRow(int rowNum) {
+		// Ignore the first row, where the titles are
+		if (this.firstRowFlag) {
+			this.firstRowFlag = false;
+		} else if (this.cellIndex < COLUMN_COUNT) {
+			System.err.println("Row " + (rowNum + 1) + " is missing course data and was skipped.");
+		} else if (this.readRows++ < this.rowCount) {
+			// Already handed over before the sheet was started again
+		} else {
+			long startNanos = ConversionMetrics.startStage();
+			if (this.courseTable != null) {
+				this.courseTable.addRow(this.cells);
+				ConversionMetrics.endStage(ConversionStage.BUILD, startNanos, 1);
+			} else {
+				CourseBuilder courseBuilder = new CourseBuilder();
+				for (int i = 0; i < COLUMN_COUNT; i++) {
+					XLSXReader.courseDataFactory(courseBuilder, i, this.cells[i]);
+				}
+				Course course = courseBuilder.toCourse();
+				ConversionMetrics.endStage(ConversionStage.BUILD, startNanos, 1);
+				this.consumer.accept(course);
+			}
+			this.rowCount++;
+		}
+	}
+
+	@Override
+	public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+		// Cells are taken in the order they appear, the same way XLSXReader#readXLSXFile walks a row's cell iterator
+		if (this.firstRowFlag || this.cellIndex >= COLUMN_COUNT) {
+			this.cellIndex++;
+			return;
+		}
+		this.cells[this.cellIndex] = formattedValue;
+		this.cellIndex++;
+	}
+
+	@Override
+	public void headerFooter(String text, boolean isHeader, String tagName) {
+		// Headers and footers do not hold course data
+	}
+
+	/**
+	 * Starts the sheet again from its title row, i.e. after a workbook that failed to parse was repaired.
+	 * The rows that were already handed over are read again, but not handed over a second time
+	 */
+	public void restart() {
+		this.firstRowFlag = true;
+		this.readRows = 0;
+	}
+
+	/**
+	 * @return The number of courses that have been sent to the consumer or added to the table
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+}
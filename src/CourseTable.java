@@ -0,0 +1,558 @@
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The courses of a schedule stored by column instead of as one {@link Course} per row, so that a whole catalog takes little memory.
+ * <ul>
+ *     <li>The term, format, meetings, location, instructor, and delivery are dictionary encoded: every distinct value is kept once,
+ *     and each row only holds an int code for it. A catalog repeats the same few terms, formats, rooms, and instructors thousands of times</li>
+ *     <li>The course is nearly unique to each section, so it is kept as UTF-8 in a single byte array instead of as a String per row.
+ *     The rows of a section with several meetings share the same bytes. The section and the display name, which every event needs,
+ *     are dictionary encoded when the row is added, so they are not decoded and computed again for every event</li>
+ *     <li>The meetings are also parsed once per distinct value, and each row holds its days and times in primitive arrays,
+ *     so they can be scanned without creating any object</li>
+ * </ul>
+ * Existing code that takes a {@link Course} reads a row through {@link CourseTable#get(int)} or {@link CourseTable#asList()},
+ * which return a small read only view of the row instead of a copy.
+ * <br>Filled by {@link XLSXReader#parseXLSXFile(java.io.File, CourseTable)}. Not thread safe while it is being filled, but can be read by any number of threads afterward.
+ */
+public class CourseTable {
+	/**
+	 * The code of a missing value
+	 */
+	public static final int NO_VALUE = -1;
+
+	/**
+	 * The days of a row whose meetings could not be parsed
+	 */
+	private static final byte UNPARSED_DAYS = -1;
+
+	/**
+	 * The code of a display name that could not be computed, which is computed again when it is read so that the error is thrown then, the same as a {@link Course}
+	 */
+	private static final int UNCOMPUTED_VALUE = -2;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	/**
+	 * The distinct values of a column, each with an int code in the order that they were first added
+	 *
+	 * @param <T> The type of the values
+	 */
+	private static final class Dictionary<T> {
+		private final Map<T, Integer> codes = new HashMap<>();
+		private final List<T> values = new ArrayList<>();
+
+		/**
+		 * @param value The value, or null
+		 * @return The code of the value, adding it if it is new, or {@link CourseTable#NO_VALUE} if it is null
+		 */
+		private int encode(T value) {
+			if (value == null) return NO_VALUE;
+			Integer code = this.codes.get(value);
+			if (code == null) {
+				code = this.values.size();
+				this.codes.put(value, code);
+				this.values.add(value);
+			}
+			return code;
+		}
+
+		/**
+		 * @param code A code from {@link Dictionary#encode(Object)}
+		 * @return The value of the code, or null if it is {@link CourseTable#NO_VALUE}
+		 */
+		private T decode(int code) {
+			return code == NO_VALUE ? null : this.values.get(code);
+		}
+
+		private int size() {
+			return this.values.size();
+		}
+	}
+
+	private final Dictionary<Term> terms = new Dictionary<>();
+	private final Dictionary<String> formats = new Dictionary<>();
+	private final Dictionary<String> meetings = new Dictionary<>();
+	private final Dictionary<String> locations = new Dictionary<>();
+	private final Dictionary<String> instructors = new Dictionary<>();
+	private final Dictionary<String> deliveries = new Dictionary<>();
+	private final Dictionary<String> sections = new Dictionary<>();
+	private final Dictionary<String> displayNames = new Dictionary<>();
+	/**
+	 * The parsed meetings of each distinct meetings, in the order of their codes. Null if they could not be parsed
+	 */
+	private final List<MeetingPattern> meetingPatterns = new ArrayList<>();
+
+	private int rowCount;
+	private int[] termCodes = new int[INITIAL_CAPACITY];
+	/**
+	 * The start of the course of each row in {@link CourseTable#courseText}
+	 */
+	private int[] courseStarts = new int[INITIAL_CAPACITY];
+	/**
+	 * The length in bytes of the course of each row, or {@link CourseTable#NO_VALUE} if it has none
+	 */
+	private int[] courseLengths = new int[INITIAL_CAPACITY];
+	private int[] formatCodes = new int[INITIAL_CAPACITY];
+	private int[] meetingCodes = new int[INITIAL_CAPACITY];
+	private int[] locationCodes = new int[INITIAL_CAPACITY];
+	private int[] instructorCodes = new int[INITIAL_CAPACITY];
+	private int[] deliveryCodes = new int[INITIAL_CAPACITY];
+	private int[] sectionCodes = new int[INITIAL_CAPACITY];
+	private int[] displayNameCodes = new int[INITIAL_CAPACITY];
+	private byte[] meetingDays = new byte[INITIAL_CAPACITY];
+	private short[] startMinutes = new short[INITIAL_CAPACITY];
+	private short[] endMinutes = new short[INITIAL_CAPACITY];
+	/**
+	 * The courses of every row as UTF-8, one after the other
+	 */
+	private byte[] courseText = new byte[INITIAL_CAPACITY * 32];
+	private int courseTextLength;
+	/**
+	 * The course of the last row, whose bytes are shared by the next row if it has the same course
+	 */
+	private String lastCourse;
+
+	/**
+	 * Adds a row with the same values that a {@link CourseBuilder} would give a {@link Course}
+	 *
+	 * @param term       The term, i.e. {@code 2023 Fall A Term}
+	 * @param course     The course, i.e. {@code CS 1101-L01 - Introduction to Program Design}
+	 * @param format     The format, i.e. {@code Lecture}
+	 * @param meetings   The meetings, i.e. {@code M-T-R-F | 10:00 AM - 10:50 AM}
+	 * @param location   The location
+	 * @param instructor The instructor
+	 * @param delivery   The delivery, i.e. {@code In-Person}
+	 * @return The index of the row
+	 */
+	public int addRow(String term, String course, String format, String meetings, String location, String instructor, String delivery) {
+		if (this.rowCount == this.termCodes.length) {
+			this.grow();
+		}
+		int row = this.rowCount++;
+		// The term is parsed once per distinct term, then taken from the cache of TermParser
+		this.termCodes[row] = this.terms.encode(TermParser.parse(term));
+		boolean sameCourse = row > 0 && course != null && course.equals(this.lastCourse);
+		this.addCourse(row, course);
+		this.formatCodes[row] = this.formats.encode(format);
+		// The section and the display name are computed once per section, instead of for every event
+		if (sameCourse) {
+			this.sectionCodes[row] = this.sectionCodes[row - 1];
+		} else {
+			this.sectionCodes[row] = this.sections.encode(Course.computeSection(course));
+		}
+		if (sameCourse && this.formatCodes[row] == this.formatCodes[row - 1]) {
+			this.displayNameCodes[row] = this.displayNameCodes[row - 1];
+		} else {
+			this.displayNameCodes[row] = this.encodeDisplayName(course, format);
+		}
+		this.locationCodes[row] = this.locations.encode(location);
+		this.instructorCodes[row] = this.instructors.encode(instructor);
+		this.deliveryCodes[row] = this.deliveries.encode(delivery);
+
+		int meetingCode = this.meetings.encode(meetings);
+		if (meetingCode == this.meetingPatterns.size()) {
+			// New meetings are parsed once. Invalid meetings are left unparsed so that the error is thrown when they are used, the same as a Course
+			this.meetingPatterns.add(MeetingPattern.tryParse(meetings));
+		}
+		this.meetingCodes[row] = meetingCode;
+		MeetingPattern meetingPattern = meetingCode != NO_VALUE ? this.meetingPatterns.get(meetingCode) : null;
+		if (meetingPattern != null) {
+			this.meetingDays[row] = (byte) meetingPattern.getDays();
+			this.startMinutes[row] = (short) meetingPattern.getStartMinute();
+			this.endMinutes[row] = (short) meetingPattern.getEndMinute();
+		} else {
+			this.meetingDays[row] = UNPARSED_DAYS;
+		}
+		return row;
+	}
+
+	/**
+	 * @param course The course of a row
+	 * @param format The format of the row
+	 * @return The code of the display name of the row, or {@link CourseTable#UNCOMPUTED_VALUE} if it cannot be computed
+	 */
+	private int encodeDisplayName(String course, String format) {
+		try {
+			return this.displayNames.encode(Course.computeDisplayName(course, format));
+		} catch (RuntimeException e) {
+			return UNCOMPUTED_VALUE;
+		}
+	}
+
+	/**
+	 * @param row    The index of the row
+	 * @param course The course of the row
+	 */
+	private void addCourse(int row, String course) {
+		if (course == null) {
+			this.courseLengths[row] = NO_VALUE;
+			// The next row has nothing to share with this one, even if it has the same course as the row before
+			this.lastCourse = null;
+			return;
+		}
+		if (row > 0 && course.equals(this.lastCourse)) {
+			this.courseStarts[row] = this.courseStarts[row - 1];
+			this.courseLengths[row] = this.courseLengths[row - 1];
+			return;
+		}
+		byte[] bytes = course.getBytes(StandardCharsets.UTF_8);
+		if (this.courseTextLength + bytes.length > this.courseText.length) {
+			this.courseText = Arrays.copyOf(this.courseText, Math.max(this.courseText.length * 2, this.courseTextLength + bytes.length));
+		}
+		System.arraycopy(bytes, 0, this.courseText, this.courseTextLength, bytes.length);
+		this.courseStarts[row] = this.courseTextLength;
+		this.courseLengths[row] = bytes.length;
+		this.courseTextLength += bytes.length;
+		this.lastCourse = course;
+	}
+
+	/**
+	 * Adds a row from the cells of a sheet
+	 *
+	 * @param cells The values of the cells in the order of {@link XLSXReader#courseDataFactory(CourseBuilder, int, String)}
+	 * @return The index of the row
+	 */
+	public int addRow(String[] cells) {
+		return this.addRow(cells[0], cells[1], cells[2], cells[3], cells[4], cells[5], cells[6]);
+	}
+
+	/**
+	 * Doubles the capacity of every column
+	 */
+	private void grow() {
+		int capacity = this.termCodes.length * 2;
+		this.termCodes = Arrays.copyOf(this.termCodes, capacity);
+		this.courseStarts = Arrays.copyOf(this.courseStarts, capacity);
+		this.courseLengths = Arrays.copyOf(this.courseLengths, capacity);
+		this.formatCodes = Arrays.copyOf(this.formatCodes, capacity);
+		this.meetingCodes = Arrays.copyOf(this.meetingCodes, capacity);
+		this.locationCodes = Arrays.copyOf(this.locationCodes, capacity);
+		this.instructorCodes = Arrays.copyOf(this.instructorCodes, capacity);
+		this.deliveryCodes = Arrays.copyOf(this.deliveryCodes, capacity);
+		this.sectionCodes = Arrays.copyOf(this.sectionCodes, capacity);
+		this.displayNameCodes = Arrays.copyOf(this.displayNameCodes, capacity);
+		this.meetingDays = Arrays.copyOf(this.meetingDays, capacity);
+		this.startMinutes = Arrays.copyOf(this.startMinutes, capacity);
+		this.endMinutes = Arrays.copyOf(this.endMinutes, capacity);
+	}
+
+	/**
+	 * @return The number of rows
+	 */
+	public int size() {
+		return this.rowCount;
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return A read only view of the row. Views of the same row are equal in content but not the same object
+	 */
+	public Course get(int row) {
+		if (row < 0 || row >= this.rowCount) {
+			throw new IndexOutOfBoundsException("Row " + row + " of " + this.rowCount);
+		}
+		return new RowView(row);
+	}
+
+	/**
+	 * @return Every row as a read only list, for code that takes a list of courses. Each row is only viewed when it is read
+	 */
+	public List<Course> asList() {
+		return new CourseList();
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The term of the row, or null if it could not be parsed
+	 */
+	public Term getParsedTerm(int row) {
+		return this.terms.decode(this.termCodes[row]);
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The course of the row, or null
+	 */
+	public String getCourse(int row) {
+		int length = this.courseLengths[row];
+		return length == NO_VALUE ? null : new String(this.courseText, this.courseStarts[row], length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The code of the term of the row, the same for every row of the same term, or {@link CourseTable#NO_VALUE}
+	 */
+	public int getTermCode(int row) {
+		return this.termCodes[row];
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The code of the location of the row, the same for every row in the same location, or {@link CourseTable#NO_VALUE}
+	 */
+	public int getLocationCode(int row) {
+		return this.locationCodes[row];
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The code of the instructor of the row, the same for every row of the same instructor, or {@link CourseTable#NO_VALUE}
+	 */
+	public int getInstructorCode(int row) {
+		return this.instructorCodes[row];
+	}
+
+	/**
+	 * @return The number of distinct locations, so every location code is below it
+	 */
+	public int getLocationCount() {
+		return this.locations.size();
+	}
+
+	/**
+	 * @return The number of distinct instructors, so every instructor code is below it
+	 */
+	public int getInstructorCount() {
+		return this.instructors.size();
+	}
+
+	/**
+	 * @param code A code from {@link CourseTable#getLocationCode(int)}
+	 * @return The location of the code, or null
+	 */
+	public String getLocationOfCode(int code) {
+		return this.locations.decode(code);
+	}
+
+	/**
+	 * @param code A code from {@link CourseTable#getInstructorCode(int)}
+	 * @return The instructor of the code, or null
+	 */
+	public String getInstructorOfCode(int code) {
+		return this.instructors.decode(code);
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return True if the meetings of the row were parsed, so that its days and times can be read
+	 */
+	public boolean hasMeetingPattern(int row) {
+		return this.meetingDays[row] != UNPARSED_DAYS;
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The bitmask of the days of the row, made of {@link MeetingPattern#MONDAY} through {@link MeetingPattern#FRIDAY}
+	 */
+	public int getMeetingDays(int row) {
+		return this.meetingDays[row];
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The start time of the row in minutes since midnight
+	 */
+	public int getStartMinute(int row) {
+		return this.startMinutes[row];
+	}
+
+	/**
+	 * @param row The index of the row
+	 * @return The end time of the row in minutes since midnight
+	 */
+	public int getEndMinute(int row) {
+		return this.endMinutes[row];
+	}
+
+	/**
+	 * @return An estimate of the bytes held by the columns and the distinct values, not counting the overhead of the dictionaries
+	 */
+	public long estimateBytes() {
+		// 8 int codes, the start and length of the course, the days, and 2 times per row
+		long bytes = (long) this.termCodes.length * (10 * Integer.BYTES + Byte.BYTES + 2 * Short.BYTES) + this.courseText.length;
+		for (Dictionary<String> dictionary : List.of(this.formats, this.meetings, this.locations, this.instructors, this.deliveries, this.sections, this.displayNames)) {
+			for (String value : dictionary.values) {
+				// The String, its array, and its entry in the dictionary
+				bytes += 24 + 16 + value.length() + 48;
+			}
+		}
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return "CourseTable{" +
+				"rows=" + rowCount +
+				", terms=" + terms.size() +
+				", courseBytes=" + courseTextLength +
+				", formats=" + formats.size() +
+				", meetings=" + meetings.size() +
+				", locations=" + locations.size() +
+				", instructors=" + instructors.size() +
+				", deliveries=" + deliveries.size() +
+				'}';
+	}
+
+	/**
+	 * The rows of the table as a list, viewing each row only when it is read
+	 */
+	private final class CourseList extends AbstractList<Course> implements RandomAccess {
+		@Override
+		public Course get(int index) {
+			return CourseTable.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return CourseTable.this.rowCount;
+		}
+	}
+
+	/**
+	 * A read only {@link Course} that reads its values from a row of the table. Only holds the index of the row
+	 */
+	private final class RowView extends Course {
+		private final int row;
+
+		private RowView(int row) {
+			this.row = row;
+		}
+
+		@Override
+		public String getTerm() {
+			Term parsedTerm = this.getParsedTerm();
+			return parsedTerm != null ? parsedTerm.getKey() : null;
+		}
+
+		@Override
+		public Term getParsedTerm() {
+			return CourseTable.this.getParsedTerm(this.row);
+		}
+
+		@Override
+		public String getCourse() {
+			return CourseTable.this.getCourse(this.row);
+		}
+
+		@Override
+		public String getSection() {
+			return CourseTable.this.sections.decode(CourseTable.this.sectionCodes[this.row]);
+		}
+
+		@Override
+		public String getFormat() {
+			return CourseTable.this.formats.decode(CourseTable.this.formatCodes[this.row]);
+		}
+
+		@Override
+		public String getMeetings() {
+			return CourseTable.this.meetings.decode(CourseTable.this.meetingCodes[this.row]);
+		}
+
+		@Override
+		public String getLocation() {
+			return CourseTable.this.locations.decode(CourseTable.this.locationCodes[this.row]);
+		}
+
+		@Override
+		public String getInstructor() {
+			return CourseTable.this.instructors.decode(CourseTable.this.instructorCodes[this.row]);
+		}
+
+		@Override
+		public String getDelivery() {
+			return CourseTable.this.deliveries.decode(CourseTable.this.deliveryCodes[this.row]);
+		}
+
+		@Override
+		public String getDisplayName() {
+			int displayNameCode = CourseTable.this.displayNameCodes[this.row];
+			if (displayNameCode == UNCOMPUTED_VALUE) {
+				return Course.computeDisplayName(this.getCourse(), this.getFormat());
+			}
+			return CourseTable.this.displayNames.decode(displayNameCode);
+		}
+
+		/**
+		 * @throws RuntimeException Thrown if the meetings cannot be parsed, the same as a {@link Course}
+		 */
+		@Override
+		public MeetingPattern getMeetingPattern() {
+			int meetingCode = CourseTable.this.meetingCodes[this.row];
+			MeetingPattern meetingPattern = meetingCode != NO_VALUE ? CourseTable.this.meetingPatterns.get(meetingCode) : null;
+			return meetingPattern != null ? meetingPattern : MeetingPattern.parse(this.getMeetings());
+		}
+
+		@Override
+		public void setTerm(String term) {
+			throw new UnsupportedOperationException("A row of a CourseTable is read only");
+		}
+
+		@Override
+		public void setParsedTerm(Term parsedTerm) {
+			throw new UnsupportedOperationException("A row of a CourseTable is read only");
+		}
+
+		@Override
+		public void setCourse(String course) {
+			throw new UnsupportedOperationException("A row of a CourseTable is read only");
+		}
+
+		@Override
+		public void setFormat(String format) {
+			throw new UnsupportedOperationException("A row of a CourseTable is read only");
+		}
+
+		@Override
+		public void setMeetings(String meetings) {
+			throw new UnsupportedOperationException("A row of a CourseTable is read only");
+		}
+
+		@Override
+		public void setLocation(String location) {
+			throw new UnsupportedOperationException("A row of a CourseTable is read only");
+		}
+
+		@Override
+		public void setInstructor(String instructor) {
+			throw new UnsupportedOperationException("A row of a CourseTable is read only");
+		}
+
+		@Override
+		public void setDelivery(String delivery) {
+			throw new UnsupportedOperationException("A row of a CourseTable is read only");
+		}
+
+		@Override
+		public void setDisplayName(String displayName) {
+			throw new UnsupportedOperationException("A row of a CourseTable is read only");
+		}
+
+		@Override
+		public void setMeetingPattern(MeetingPattern meetingPattern) {
+			throw new UnsupportedOperationException("A row of a CourseTable is read only");
+		}
+
+		@Override
+		public String toString() {
+			return "Course{" +
+					"term='" + getTerm() + '\'' +
+					", course='" + getCourse() + '\'' +
+					", format='" + getFormat() + '\'' +
+					", meetings='" + getMeetings() + '\'' +
+					", location='" + getLocation() + '\'' +
+					", instructor='" + getInstructor() + '\'' +
+					", delivery='" + getDelivery() + '\'' +
+					", displayName='" + getDisplayName() + '\'' +
+					'}';
+		}
+	}
+}
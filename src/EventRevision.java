@@ -0,0 +1,66 @@
+/**
+ * The properties of an event that say when and how often it was changed:
+ * {@code DTSTAMP}, {@code CREATED}, {@code LAST-MODIFIED}, and {@code SEQUENCE}.
+ * <br>Kept apart from the rest of the event so that an unchanged event can be written again with the revision it was first written with.
+ */
+public final class EventRevision {
+	private final String timestamp;
+	private final String created;
+	private final String lastModified;
+	private final int sequence;
+
+	/**
+	 * @param timestamp    The {@code DTSTAMP}, in the format {@code yyyyMMdd'T'HHmmss'Z'}
+	 * @param created      The {@code CREATED}, in the same format
+	 * @param lastModified The {@code LAST-MODIFIED}, in the same format
+	 * @param sequence     The {@code SEQUENCE}, the number of times that the event was changed
+	 */
+	public EventRevision(String timestamp, String created, String lastModified, int sequence) {
+		this.timestamp = timestamp;
+		this.created = created;
+		this.lastModified = lastModified;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * @param timestamp The time of the first revision
+	 * @return The revision of an event that is new at {@code timestamp}
+	 */
+	public static EventRevision first(String timestamp) {
+		return new EventRevision(timestamp, timestamp, timestamp, 0);
+	}
+
+	/**
+	 * @param timestamp The time of the change
+	 * @return The revision of this event once it is changed at {@code timestamp}. It keeps its {@code CREATED}
+	 */
+	public EventRevision next(String timestamp) {
+		return new EventRevision(timestamp, this.created, timestamp, this.sequence + 1);
+	}
+
+	public String getTimestamp() {
+		return timestamp;
+	}
+
+	public String getCreated() {
+		return created;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	public int getSequence() {
+		return sequence;
+	}
+
+	@Override
+	public String toString() {
+		return "EventRevision{" +
+				"timestamp='" + timestamp + '\'' +
+				", created='" + created + '\'' +
+				", lastModified='" + lastModified + '\'' +
+				", sequence=" + sequence +
+				'}';
+	}
+}
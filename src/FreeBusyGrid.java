@@ -0,0 +1,533 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Combines the schedules of a group, i.e. the students of a club, to find the weekly times that are free for all or most of them.
+ * <br>Usage: {@code --free-busy <directory> [--date YYYY-MM-DD] [--from HH:MM] [--to HH:MM] [--min-minutes 30] [--max-busy 0] [--counts] [--terms FILE]}
+ * <br>Every schedule in the directory is one member of the group.
+ * <br>A week is cut into slots of {@value #SLOT_MINUTES} minutes, and a schedule becomes a bitmap with a bit for every slot that a course takes up,
+ * even partly. The {@value #SLOT_COUNT} slots of a week fit in 23 longs, so a group is combined a word at a time: the bitmaps are ORed into the slots
+ * that are busy for anyone, and added into a count of the busy members of every slot that is kept one bit plane per binary digit.
+ * Adding a schedule then takes O(log n) word operations per word, for a group of n schedules.
+ * <br>With a date, only the courses whose term includes the date are counted. Otherwise every course of a schedule is.
+ * <br>Not thread safe.
+ */
+public class FreeBusyGrid {
+	public static final int SLOT_MINUTES = 5;
+	public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+	public static final int WEEKDAY_COUNT = 5;
+	public static final int SLOT_COUNT = WEEKDAY_COUNT * SLOTS_PER_DAY;
+	private static final int WORD_COUNT = (SLOT_COUNT + Long.SIZE - 1) / Long.SIZE;
+	private static final String[] WEEKDAY_NAMES = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday"};
+
+	/**
+	 * A time on one weekday that is free for the group
+	 */
+	public static final class FreeWindow {
+		private final int day;
+		private final int startMinute;
+		private final int endMinute;
+
+		/**
+		 * @param day         The day, one of {@link MeetingPattern#MONDAY} through {@link MeetingPattern#FRIDAY}
+		 * @param startMinute The start of the window in minutes since midnight
+		 * @param endMinute   The end of the window in minutes since midnight
+		 */
+		public FreeWindow(int day, int startMinute, int endMinute) {
+			this.day = day;
+			this.startMinute = startMinute;
+			this.endMinute = endMinute;
+		}
+
+		/**
+		 * @return The day, one of {@link MeetingPattern#MONDAY} through {@link MeetingPattern#FRIDAY}
+		 */
+		public int getDay() {
+			return day;
+		}
+
+		/**
+		 * @return The start of the window in minutes since midnight
+		 */
+		public int getStartMinute() {
+			return startMinute;
+		}
+
+		/**
+		 * @return The end of the window in minutes since midnight
+		 */
+		public int getEndMinute() {
+			return endMinute;
+		}
+
+		/**
+		 * @return The length of the window in minutes
+		 */
+		public int getMinutes() {
+			return endMinute - startMinute;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof FreeWindow freeWindow)) return false;
+			return day == freeWindow.day && startMinute == freeWindow.startMinute && endMinute == freeWindow.endMinute;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(day, startMinute, endMinute);
+		}
+
+		@Override
+		public String toString() {
+			return WEEKDAY_NAMES[Integer.numberOfTrailingZeros(day)] + " from " + ConflictDetector.formatMinute(startMinute)
+					+ " to " + ConflictDetector.formatMinute(endMinute) + " (" + this.getMinutes() + " minutes)";
+		}
+	}
+
+	private final TermRegistry termRegistry;
+	/**
+	 * The day whose courses are counted as an epoch day, or {@link Long#MIN_VALUE} to count every course
+	 */
+	private final long epochDay;
+	/**
+	 * The slots that are busy for at least one schedule
+	 */
+	private final long[] anyBusy = new long[WORD_COUNT];
+	/**
+	 * The number of busy schedules of every slot, in binary: bit {@code p} of the count of a slot is the bit of the slot in plane {@code p}
+	 */
+	private long[][] countPlanes = new long[0][];
+	private int scheduleCount;
+	private int skippedCourses;
+
+	/**
+	 * Counts every course of a schedule, whatever its term
+	 */
+	public FreeBusyGrid() {
+		this.termRegistry = null;
+		this.epochDay = Long.MIN_VALUE;
+	}
+
+	/**
+	 * @param termRegistry The dates of the terms
+	 * @param date         Only the courses whose term includes this date are counted
+	 */
+	public FreeBusyGrid(TermRegistry termRegistry, LocalDate date) {
+		this.termRegistry = Objects.requireNonNull(termRegistry, "termRegistry");
+		this.epochDay = date.toEpochDay();
+	}
+
+	/**
+	 * @param schedule The courses of one member of the group
+	 * @return The slots that the courses take up, with the slot {@code day * SLOTS_PER_DAY + minute / SLOT_MINUTES} at bit {@code slot % 64} of word {@code slot / 64}
+	 */
+	public long[] toBitmap(List<Course> schedule) {
+		long[] bitmap = new long[WORD_COUNT];
+		for (Course course : schedule) {
+			MeetingPattern meetingPattern = this.getCountedMeetingPattern(course);
+			if (meetingPattern == null) {
+				continue;
+			}
+			int firstSlot = meetingPattern.getStartMinute() / SLOT_MINUTES;
+			// A slot that the course only takes up partly is still busy
+			int endSlot = Math.min((meetingPattern.getEndMinute() + SLOT_MINUTES - 1) / SLOT_MINUTES, SLOTS_PER_DAY);
+			for (int days = meetingPattern.getDays(); days != 0; days &= days - 1) {
+				int dayOffset = Integer.numberOfTrailingZeros(days) * SLOTS_PER_DAY;
+				FreeBusyGrid.setRange(bitmap, dayOffset + firstSlot, dayOffset + endSlot);
+			}
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Adds the schedule of one member to the group
+	 *
+	 * @param schedule The courses of the member
+	 */
+	public void add(List<Course> schedule) {
+		this.add(this.toBitmap(schedule));
+	}
+
+	/**
+	 * Adds the schedule of one member to the group
+	 *
+	 * @param bitmap The busy slots of the member, from {@link FreeBusyGrid#toBitmap(List)}
+	 */
+	public void add(long[] bitmap) {
+		if (bitmap.length != WORD_COUNT) {
+			throw new IllegalArgumentException("A bitmap has " + WORD_COUNT + " words, not " + bitmap.length);
+		}
+		for (int word = 0; word < WORD_COUNT; word++) {
+			long carry = bitmap[word];
+			this.anyBusy[word] |= carry;
+			// Add one to the count of every busy slot of the word, carrying into the next plane like a binary adder
+			for (int plane = 0; carry != 0; plane++) {
+				if (plane == this.countPlanes.length) {
+					this.countPlanes = Arrays.copyOf(this.countPlanes, plane + 1);
+					this.countPlanes[plane] = new long[WORD_COUNT];
+				}
+				long[] countPlane = this.countPlanes[plane];
+				long nextCarry = countPlane[word] & carry;
+				countPlane[word] ^= carry;
+				carry = nextCarry;
+			}
+		}
+		this.scheduleCount++;
+	}
+
+	/**
+	 * @return The number of schedules in the group
+	 */
+	public int getScheduleCount() {
+		return scheduleCount;
+	}
+
+	/**
+	 * @return The number of courses that were not counted since their meetings or their term could not be read
+	 */
+	public int getSkippedCourses() {
+		return skippedCourses;
+	}
+
+	/**
+	 * @return The number of schedules that are busy in every slot, indexed the same way as {@link FreeBusyGrid#toBitmap(List)}
+	 */
+	public int[] getBusyCounts() {
+		int[] busyCounts = new int[SLOT_COUNT];
+		for (int plane = 0; plane < this.countPlanes.length; plane++) {
+			long[] countPlane = this.countPlanes[plane];
+			for (int word = 0; word < WORD_COUNT; word++) {
+				for (long bits = countPlane[word]; bits != 0; bits &= bits - 1) {
+					busyCounts[word * Long.SIZE + Long.numberOfTrailingZeros(bits)] += 1 << plane;
+				}
+			}
+		}
+		return busyCounts;
+	}
+
+	/**
+	 * @param day    The day, one of {@link MeetingPattern#MONDAY} through {@link MeetingPattern#FRIDAY}
+	 * @param minute The time in minutes since midnight
+	 * @return The number of schedules that are busy in the slot of the time
+	 */
+	public int getBusyCount(int day, int minute) {
+		int slot = FreeBusyGrid.getSlot(day, minute);
+		int busyCount = 0;
+		for (int plane = 0; plane < this.countPlanes.length; plane++) {
+			busyCount |= (int) (this.countPlanes[plane][slot / Long.SIZE] >>> slot & 1) << plane;
+		}
+		return busyCount;
+	}
+
+	/**
+	 * @return The number of slots in the week that are busy for at least one schedule
+	 */
+	public int getBusySlotCount() {
+		int busySlotCount = 0;
+		for (long word : this.anyBusy) {
+			busySlotCount += Long.bitCount(word);
+		}
+		return busySlotCount;
+	}
+
+	/**
+	 * @param maxBusy The most schedules that may be busy in a slot that is still counted as free
+	 * @return The slots that more than {@code maxBusy} schedules are busy in
+	 */
+	private long[] getBusySlots(int maxBusy) {
+		if (maxBusy <= 0) {
+			return this.anyBusy;
+		}
+		// Compare the count of every slot with maxBusy a word at a time, from the highest bit plane down
+		long[] busySlots = new long[WORD_COUNT];
+		int planeCount = this.countPlanes.length;
+		if (planeCount < Integer.SIZE && maxBusy >= (1 << planeCount) - 1) {
+			// No count can be higher
+			return busySlots;
+		}
+		for (int word = 0; word < WORD_COUNT; word++) {
+			long greater = 0;
+			long equal = -1L;
+			for (int plane = planeCount - 1; plane >= 0; plane--) {
+				long countBits = this.countPlanes[plane][word];
+				if ((maxBusy >>> plane & 1) == 0) {
+					greater |= equal & countBits;
+					equal &= ~countBits;
+				} else {
+					equal &= countBits;
+				}
+			}
+			busySlots[word] = greater;
+		}
+		return busySlots;
+	}
+
+	/**
+	 * Finds the times when every schedule of the group is free
+	 *
+	 * @param fromMinute The earliest time to consider in minutes since midnight, i.e. 8 AM is 480
+	 * @param toMinute   The latest time to consider in minutes since midnight
+	 * @param minMinutes The shortest window to return
+	 * @return The free windows in the order of their day and start
+	 */
+	public List<FreeWindow> getFreeWindows(int fromMinute, int toMinute, int minMinutes) {
+		return this.getFreeWindows(0, fromMinute, toMinute, minMinutes);
+	}
+
+	/**
+	 * Finds the times when at most {@code maxBusy} schedules of the group are busy, i.e. for a group too large to ever be free at once
+	 *
+	 * @param maxBusy    The most schedules that may be busy during a window
+	 * @param fromMinute The earliest time to consider in minutes since midnight, i.e. 8 AM is 480
+	 * @param toMinute   The latest time to consider in minutes since midnight
+	 * @param minMinutes The shortest window to return
+	 * @return The windows in the order of their day and start
+	 */
+	public List<FreeWindow> getFreeWindows(int maxBusy, int fromMinute, int toMinute, int minMinutes) {
+		long[] busySlots = this.getBusySlots(maxBusy);
+		int firstSlot = Math.max(fromMinute, 0) / SLOT_MINUTES;
+		int endSlot = Math.min(toMinute, 24 * 60) / SLOT_MINUTES;
+		List<FreeWindow> freeWindows = new ArrayList<>();
+		for (int weekday = 0; weekday < WEEKDAY_COUNT; weekday++) {
+			int dayOffset = weekday * SLOTS_PER_DAY;
+			int slot = dayOffset + firstSlot;
+			int dayEnd = dayOffset + endSlot;
+			while (slot < dayEnd) {
+				// Jump over the busy slots, then over the free slots, a word at a time
+				int freeStart = FreeBusyGrid.nextSlot(busySlots, slot, dayEnd, false);
+				if (freeStart >= dayEnd) {
+					break;
+				}
+				int freeEnd = FreeBusyGrid.nextSlot(busySlots, freeStart, dayEnd, true);
+				int startMinute = (freeStart - dayOffset) * SLOT_MINUTES;
+				int endMinute = (freeEnd - dayOffset) * SLOT_MINUTES;
+				if (endMinute - startMinute >= minMinutes) {
+					freeWindows.add(new FreeWindow(1 << weekday, startMinute, endMinute));
+				}
+				slot = freeEnd;
+			}
+		}
+		return freeWindows;
+	}
+
+	/**
+	 * @param course A course of a schedule
+	 * @return The days and times of the course, or null if it is not counted since it is not in the term of the date or cannot be read
+	 */
+	private MeetingPattern getCountedMeetingPattern(Course course) {
+		MeetingPattern meetingPattern;
+		try {
+			meetingPattern = course.getMeetingPattern();
+		} catch (RuntimeException e) {
+			meetingPattern = null;
+		}
+		if (meetingPattern == null || meetingPattern.getEndMinute() <= meetingPattern.getStartMinute()) {
+			this.skippedCourses++;
+			return null;
+		}
+		if (this.termRegistry == null) {
+			return meetingPattern;
+		}
+		int span = TermCalendar.getSpanIndex(course.getTerm());
+		TermCalendar termCalendar = this.termRegistry.getCalendar(course.getParsedTerm());
+		if (span == -1 || termCalendar == null || !termCalendar.isDefined(span)) {
+			this.skippedCourses++;
+			return null;
+		}
+		boolean inTerm = termCalendar.getStartEpochDay(span) <= this.epochDay && this.epochDay <= termCalendar.getEndEpochDay(span);
+		return inTerm ? meetingPattern : null;
+	}
+
+	/**
+	 * @param day    The day, one of {@link MeetingPattern#MONDAY} through {@link MeetingPattern#FRIDAY}
+	 * @param minute The time in minutes since midnight
+	 * @return The slot of the time
+	 */
+	private static int getSlot(int day, int minute) {
+		if (Integer.bitCount(day) != 1 || day >= 1 << WEEKDAY_COUNT || minute < 0 || minute >= 24 * 60) {
+			throw new IllegalArgumentException("Not a weekday and time: " + day + ", " + minute);
+		}
+		return Integer.numberOfTrailingZeros(day) * SLOTS_PER_DAY + minute / SLOT_MINUTES;
+	}
+
+	/**
+	 * Sets the bits of the slots from {@code from} to {@code to}, a word at a time
+	 *
+	 * @param bitmap The bitmap
+	 * @param from   The first slot
+	 * @param to     The slot after the last slot
+	 */
+	private static void setRange(long[] bitmap, int from, int to) {
+		if (from >= to) {
+			return;
+		}
+		int firstWord = from / Long.SIZE;
+		int lastWord = (to - 1) / Long.SIZE;
+		// Shifts only use the low six bits, so these are the bits from "from" up, and up to "to"
+		long firstMask = -1L << from;
+		long lastMask = -1L >>> -to;
+		if (firstWord == lastWord) {
+			bitmap[firstWord] |= firstMask & lastMask;
+			return;
+		}
+		bitmap[firstWord] |= firstMask;
+		for (int word = firstWord + 1; word < lastWord; word++) {
+			bitmap[word] = -1L;
+		}
+		bitmap[lastWord] |= lastMask;
+	}
+
+	/**
+	 * @param bitmap The bitmap
+	 * @param from   The first slot to check
+	 * @param to     The slot after the last slot to check
+	 * @param set    True to find the next set bit, false to find the next clear bit
+	 * @return The first slot from {@code from} whose bit is {@code set}, or {@code to} if there is none
+	 */
+	private static int nextSlot(long[] bitmap, int from, int to, boolean set) {
+		int word = from / Long.SIZE;
+		long bits = (set ? bitmap[word] : ~bitmap[word]) & -1L << from;
+		while (bits == 0) {
+			word++;
+			if (word * Long.SIZE >= to) {
+				return to;
+			}
+			bits = set ? bitmap[word] : ~bitmap[word];
+		}
+		return Math.min(word * Long.SIZE + Long.numberOfTrailingZeros(bits), to);
+	}
+
+	/**
+	 * Runs the free/busy mode from the command line arguments
+	 *
+	 * @param args The command line arguments, starting with {@code --free-busy}
+	 * @return The exit code. 0 if a window was found, 1 if none was, and 2 if the arguments are invalid
+	 */
+	public static int run(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: --free-busy <directory> [--date YYYY-MM-DD] [--from HH:MM] [--to HH:MM] [--min-minutes 30] [--max-busy 0] [--counts] [--terms FILE]");
+			return 2;
+		}
+		File inputDirectory = new File(args[1]);
+		LocalDate date = null;
+		int fromMinute = 8 * 60;
+		int toMinute = 22 * 60;
+		int minMinutes = 30;
+		int maxBusy = 0;
+		boolean counts = false;
+		Path termsFile = null;
+		try {
+			for (int i = 2; i < args.length; i++) {
+				if (args[i].equals("--counts")) {
+					counts = true;
+					continue;
+				}
+				if (i + 1 >= args.length) {
+					System.err.println("Missing value for " + args[i]);
+					return 2;
+				}
+				String value = args[++i];
+				switch (args[i - 1]) {
+					case "--date" -> date = LocalDate.parse(value);
+					case "--from" -> fromMinute = FreeBusyGrid.parseMinute(value);
+					case "--to" -> toMinute = FreeBusyGrid.parseMinute(value);
+					case "--min-minutes" -> minMinutes = Integer.parseInt(value);
+					case "--max-busy" -> maxBusy = Integer.parseInt(value);
+					case "--terms" -> termsFile = Path.of(value);
+					default -> {
+						System.err.println("Unknown argument: " + args[i - 1]);
+						return 2;
+					}
+				}
+			}
+		} catch (IllegalArgumentException | DateTimeParseException e) {
+			System.err.println("Invalid argument: " + e.getMessage());
+			return 2;
+		}
+
+		File[] inputFiles = inputDirectory.listFiles((directory, name) -> name.toLowerCase().endsWith(".xlsx") || name.toLowerCase().endsWith(".csv"));
+		if (inputFiles == null) {
+			System.err.println("Could not list the files in " + inputDirectory + ".");
+			return 2;
+		}
+		Arrays.sort(inputFiles);
+
+		FreeBusyGrid freeBusyGrid;
+		if (date != null) {
+			// Get the terms, without ever waiting for the console
+			try {
+				TermRegistry termRegistry = termsFile != null ? TermRegistry.read(termsFile) : TermRegistry.of(TermDateGetter.readTerms());
+				freeBusyGrid = new FreeBusyGrid(termRegistry, date);
+			} catch (IOException e) {
+				System.err.println("Could not read the term dates: " + e);
+				return 2;
+			}
+		} else {
+			freeBusyGrid = new FreeBusyGrid();
+		}
+
+		// The schedules are read on every core, and then combined on this thread
+		List<List<Course>> schedules = Arrays.stream(inputFiles).parallel().map(inputFile -> {
+			CourseTable courseTable = new CourseTable();
+			try {
+				ScheduleReader.parseFile(inputFile, courseTable);
+			} catch (Exception e) {
+				System.err.println("Could not read " + inputFile.getName() + ", which was skipped: " + e);
+				return null;
+			}
+			return courseTable.asList();
+		}).filter(Objects::nonNull).toList();
+
+		long startTime = System.nanoTime();
+		for (List<Course> schedule : schedules) {
+			freeBusyGrid.add(schedule);
+		}
+		List<FreeWindow> freeWindows = freeBusyGrid.getFreeWindows(maxBusy, fromMinute, toMinute, minMinutes);
+		int[] busyCounts = counts ? freeBusyGrid.getBusyCounts() : null;
+		long elapsedNanos = System.nanoTime() - startTime;
+
+		if (busyCounts != null) {
+			System.out.println("day,time,busy");
+			for (int weekday = 0; weekday < WEEKDAY_COUNT; weekday++) {
+				for (int slot = fromMinute / SLOT_MINUTES; slot < toMinute / SLOT_MINUTES; slot++) {
+					System.out.println(WEEKDAY_NAMES[weekday] + "," + ConflictDetector.formatMinute(slot * SLOT_MINUTES) + ","
+							+ busyCounts[weekday * SLOTS_PER_DAY + slot]);
+				}
+			}
+		}
+		for (FreeWindow freeWindow : freeWindows) {
+			System.out.println(freeWindow);
+		}
+		System.out.printf("Found %d windows free for %s of %d schedules in %.3f ms, %d courses could not be counted%n", freeWindows.size(),
+				maxBusy > 0 ? "all but " + maxBusy : "all", freeBusyGrid.getScheduleCount(), elapsedNanos / 1e6, freeBusyGrid.getSkippedCourses());
+		return freeWindows.isEmpty() ? 1 : 0;
+	}
+
+	/**
+	 * @param time The time in the format {@code HH:MM} on a 24 hour clock
+	 * @return The time in minutes since midnight
+	 * @throws IllegalArgumentException Thrown if the time is not in the format
+	 */
+	private static int parseMinute(String time) {
+		int colonIndex = time.indexOf(':');
+		try {
+			int hour = Integer.parseInt(colonIndex < 0 ? time : time.substring(0, colonIndex));
+			int minute = colonIndex < 0 ? 0 : Integer.parseInt(time.substring(colonIndex + 1));
+			if (hour < 0 || hour > 24 || minute < 0 || minute >= 60 || hour * 60 + minute > 24 * 60) {
+				throw new IllegalArgumentException("Invalid time: " + time);
+			}
+			return hour * 60 + minute;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid time: " + time);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Appends content lines to a buffer, folding every line so that it is never longer than 75 octets of UTF-8, as RFC 5545 requires.
+ * <br>A line is folded by inserting a CRLF followed by a space, and never in the middle of a character, so multi-byte characters are never split.
+ * <br>Lines are folded while they are appended, so nothing is created for each line.
+ * <br>Not thread safe. Use one folder per buffer.
+ */
+public class ICSLineFolder {
+	/**
+	 * The maximum length of a line in octets, not including the CRLF
+	 */
+	private static final int MAX_LINE_OCTETS = 75;
+
+	/**
+	 * ICS requires that new lines be CRLF instead of \n.
+	 */
+	private static final String DELIM = "\r\n";
+
+	private final StringBuilder out;
+
+	/**
+	 * The number of octets in the current line so far
+	 */
+	private int lineOctets;
+
+	/**
+	 * @param out The buffer to append the lines to. Must be empty or end at the start of a line
+	 */
+	public ICSLineFolder(StringBuilder out) {
+		this.out = out;
+	}
+
+	/**
+	 * Appends text without escaping it. A CRLF in the text ends the current line.
+	 *
+	 * @param text The text to append
+	 * @return This folder
+	 */
+	public ICSLineFolder append(CharSequence text) {
+		for (int i = 0, length = text.length(); i < length; i++) {
+			this.append(text.charAt(i));
+		}
+		return this;
+	}
+
+	/**
+	 * Appends a character without escaping it. A line feed ends the current line.
+	 *
+	 * @param c The character to append
+	 * @return This folder
+	 */
+	public ICSLineFolder append(char c) {
+		if (c == '\n') {
+			this.out.append(c);
+			this.lineOctets = 0;
+			return this;
+		}
+
+		int octets;
+		if (c < 0x80) {
+			octets = c == '\r' ? 0 : 1;
+		} else if (c < 0x800) {
+			octets = 2;
+		} else if (Character.isHighSurrogate(c)) {
+			// A surrogate pair is 4 octets. Count them all on the high surrogate so the pair is never split
+			octets = 4;
+		} else if (Character.isLowSurrogate(c)) {
+			octets = 0;
+		} else {
+			octets = 3;
+		}
+
+		if (this.lineOctets + octets > MAX_LINE_OCTETS) {
+			// Fold the line. The space at the start of the next line counts as an octet of that line
+			this.out.append(DELIM).append(' ');
+			this.lineOctets = 1;
+		}
+		this.out.append(c);
+		this.lineOctets += octets;
+		return this;
+	}
+
+	/**
+	 * @param value The number to append. Must not be negative
+	 * @return This folder
+	 */
+	public ICSLineFolder append(int value) {
+		int divisor = 1;
+		while (value / divisor >= 10) divisor *= 10;
+		for (; divisor > 0; divisor /= 10) {
+			this.append((char) ('0' + value / divisor % 10));
+		}
+		return this;
+	}
+
+	/**
+	 * Appends the value of a {@code TEXT} property, escaping backslashes, semicolons, commas, and new lines
+	 *
+	 * @param text The text to append. Nothing is appended if it is null
+	 * @return This folder
+	 */
+	public ICSLineFolder appendText(CharSequence text) {
+		if (text == null) return this;
+		for (int i = 0, length = text.length(); i < length; i++) {
+			char c = text.charAt(i);
+			switch (c) {
+				case '\\', ';', ',' -> this.append('\\').append(c);
+				case '\n' -> this.append('\\').append('n');
+				case '\r' -> {
+					// Dropped, since a CRLF is escaped as a single \n
+				}
+				default -> this.append(c);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Ends the current line with a CRLF
+	 *
+	 * @return This folder
+	 */
+	public ICSLineFolder endLine() {
+		this.out.append(DELIM);
+		this.lineOctets = 0;
+		return this;
+	}
+
+	/**
+	 * @return The buffer that the lines are appended to
+	 */
+	public StringBuilder getBuffer() {
+		return out;
+	}
+}
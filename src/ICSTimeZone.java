@@ -0,0 +1,200 @@
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.time.zone.ZoneRulesException;
+import java.time.zone.ZoneRulesProvider;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes the {@code VTIMEZONE} of a time zone from the rules of the JDK, so that calendar clients do not need their own copy of the rules.
+ * <br>Every change of offset in the years of the calendar gets its own {@code STANDARD} or {@code DAYLIGHT} observance, with the change before
+ * the first year so that the offset in effect at the start is known. Only the years that the terms cover are written, which keeps the block short
+ * while still being exact for zones that changed their rules.
+ * <br>The text of a zone is generated once per range of years and cached, so every calendar of a batch or a server reuses it.
+ */
+public final class ICSTimeZone {
+	/**
+	 * The zone of the campus, used when no other zone is chosen
+	 */
+	public static final ZoneId DEFAULT_ZONE = ZoneId.of("America/New_York");
+
+	/**
+	 * ICS requires that new lines be CRLF instead of \n.
+	 */
+	private static final String DELIM = "\r\n";
+	/**
+	 * The start of the observance of a zone that never changed its offset, i.e. {@code Etc/UTC}
+	 */
+	private static final LocalDateTime FIXED_OFFSET_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+	private static final DateTimeFormatter LOCAL_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+	private static final DateTimeFormatter UTC_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+	private static final Map<String, String> CACHE = new ConcurrentHashMap<>();
+	/**
+	 * The {@code UNTIL} of each zone by the last day of a span. Only a few terms end in a calendar, so only a few are ever computed
+	 */
+	private static final Map<ZoneId, Map<Long, String>> UNTIL_CACHE = new ConcurrentHashMap<>();
+
+	private ICSTimeZone() {
+	}
+
+	/**
+	 * @param zone      The time zone
+	 * @param firstYear The first year that the calendar has events in
+	 * @param lastYear  The last year that the calendar has events in
+	 * @return The {@code VTIMEZONE} of the zone in those years, from {@code BEGIN:VTIMEZONE} to the CRLF after {@code END:VTIMEZONE}
+	 */
+	public static String getVTimeZone(ZoneId zone, int firstYear, int lastYear) {
+		if (lastYear < firstYear) {
+			throw new IllegalArgumentException("The last year " + lastYear + " is before the first year " + firstYear);
+		}
+		return CACHE.computeIfAbsent(zone.getId() + ' ' + firstYear + ' ' + lastYear, key -> ICSTimeZone.generate(zone, firstYear, lastYear));
+	}
+
+	/**
+	 * @param zone        The time zone of a course
+	 * @param endEpochDay The last day of the term of the course as an epoch day
+	 * @return The end of that day in the zone, in UTC in the format of the {@code UNTIL} of an {@code RRULE}, i.e. {@code 20231014T035959Z}
+	 */
+	public static String getUntil(ZoneId zone, long endEpochDay) {
+		return UNTIL_CACHE.computeIfAbsent(zone, key -> new ConcurrentHashMap<>())
+				.computeIfAbsent(endEpochDay, key -> UTC_TIME_FORMATTER.format(LocalDate.ofEpochDay(endEpochDay).atTime(23, 59, 59).atZone(zone)));
+	}
+
+	/**
+	 * @param zoneId The ID of a time zone from the command line, i.e. {@code America/Chicago}
+	 * @return The zone, or null if there is no such zone, which is reported
+	 */
+	public static ZoneId parseZone(String zoneId) {
+		try {
+			return ZoneId.of(zoneId);
+		} catch (DateTimeException e) {
+			System.err.println("Unknown time zone: " + zoneId);
+			return null;
+		}
+	}
+
+	/**
+	 * @param zonesByLocationPrefix Receives the zone of the campus
+	 * @param campusZone            A campus from the command line, as the start of its locations and its zone, i.e. {@code Paris Campus=Europe/Paris}
+	 * @return True if the campus was added, false if it is invalid, which is reported
+	 */
+	public static boolean putCampusZone(Map<String, ZoneId> zonesByLocationPrefix, String campusZone) {
+		int separatorIndex = campusZone.lastIndexOf('=');
+		if (separatorIndex < 1) {
+			System.err.println("A campus zone must be <location prefix>=<zone>, not " + campusZone);
+			return false;
+		}
+		ZoneId zone = ICSTimeZone.parseZone(campusZone.substring(separatorIndex + 1));
+		if (zone == null) {
+			return false;
+		}
+		zonesByLocationPrefix.put(campusZone.substring(0, separatorIndex), zone);
+		return true;
+	}
+
+	/**
+	 * @param zone The time zone
+	 * @return The version of the rules of the zone, i.e. {@code 2024a}, which changes the {@code VTIMEZONE} when the JDK is updated
+	 */
+	public static String getRulesVersion(ZoneId zone) {
+		if (zone instanceof ZoneOffset) {
+			return "";
+		}
+		try {
+			return ZoneRulesProvider.getVersions(zone.getId()).lastKey();
+		} catch (ZoneRulesException e) {
+			// Not from a provider, so it cannot change
+			return "";
+		}
+	}
+
+	/**
+	 * @param zone      The time zone
+	 * @param firstYear The first year that the calendar has events in
+	 * @param lastYear  The last year that the calendar has events in
+	 * @return The {@code VTIMEZONE} of the zone in those years
+	 */
+	private static String generate(ZoneId zone, int firstYear, int lastYear) {
+		ZoneRules rules = zone.getRules();
+		Instant start = LocalDate.of(firstYear, 1, 1).atStartOfDay(zone).toInstant();
+		Instant end = LocalDate.of(lastYear + 1, 1, 1).atStartOfDay(zone).toInstant();
+		// The zone names are only written in English, whatever the locale of the program
+		DateTimeFormatter nameFormatter = DateTimeFormatter.ofPattern("zzz", Locale.US).withZone(zone);
+
+		StringBuilder vTimeZone = new StringBuilder(512);
+		vTimeZone.append("BEGIN:VTIMEZONE").append(DELIM);
+		vTimeZone.append("TZID:").append(zone.getId()).append(DELIM);
+
+		// The offset in effect at the start of the first year
+		ZoneOffsetTransition transition = rules.previousTransition(start.plusNanos(1));
+		if (transition == null) {
+			ZoneOffset offset = rules.getOffset(start);
+			ICSTimeZone.appendObservance(vTimeZone, false, FIXED_OFFSET_START, offset, offset, nameFormatter.format(start));
+			transition = rules.nextTransition(start);
+		}
+		while (transition != null && transition.getInstant().isBefore(end)) {
+			Instant instant = transition.getInstant();
+			ICSTimeZone.appendObservance(vTimeZone, rules.isDaylightSavings(instant), transition.getDateTimeBefore(),
+					transition.getOffsetBefore(), transition.getOffsetAfter(), nameFormatter.format(instant));
+			transition = rules.nextTransition(instant);
+		}
+
+		vTimeZone.append("END:VTIMEZONE").append(DELIM);
+		return vTimeZone.toString();
+	}
+
+	/**
+	 * @param vTimeZone   Where to append the observance
+	 * @param daylight    True for a {@code DAYLIGHT} observance, false for a {@code STANDARD} one
+	 * @param onset       The local time that the observance starts at, in the offset before it
+	 * @param offsetFrom  The offset before the observance
+	 * @param offsetTo    The offset during the observance
+	 * @param name        The short name of the zone during the observance, i.e. {@code EDT}
+	 */
+	private static void appendObservance(StringBuilder vTimeZone, boolean daylight, LocalDateTime onset, ZoneOffset offsetFrom, ZoneOffset offsetTo, String name) {
+		String component = daylight ? "DAYLIGHT" : "STANDARD";
+		vTimeZone.append("BEGIN:").append(component).append(DELIM);
+		vTimeZone.append("DTSTART:").append(LOCAL_TIME_FORMATTER.format(onset)).append(DELIM);
+		vTimeZone.append("TZOFFSETFROM:");
+		ICSTimeZone.appendOffset(vTimeZone, offsetFrom);
+		vTimeZone.append(DELIM);
+		vTimeZone.append("TZOFFSETTO:");
+		ICSTimeZone.appendOffset(vTimeZone, offsetTo);
+		vTimeZone.append(DELIM);
+		vTimeZone.append("TZNAME:").append(name).append(DELIM);
+		vTimeZone.append("END:").append(component).append(DELIM);
+	}
+
+	/**
+	 * @param text   Where to append the offset
+	 * @param offset The offset, which is appended in the ICS format {@code -0500}, with the seconds only if there are any
+	 */
+	private static void appendOffset(StringBuilder text, ZoneOffset offset) {
+		int totalSeconds = offset.getTotalSeconds();
+		text.append(totalSeconds < 0 ? '-' : '+');
+		int absoluteSeconds = Math.abs(totalSeconds);
+		ICSTimeZone.appendTwoDigits(text, absoluteSeconds / 3600);
+		ICSTimeZone.appendTwoDigits(text, absoluteSeconds / 60 % 60);
+		if (absoluteSeconds % 60 != 0) {
+			ICSTimeZone.appendTwoDigits(text, absoluteSeconds % 60);
+		}
+	}
+
+	/**
+	 * @param text  Where to append the number
+	 * @param value A number from 0 to 99
+	 */
+	private static void appendTwoDigits(StringBuilder text, int value) {
+		text.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+	}
+}
@@ -0,0 +1,522 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes a calendar in the ICS format to a channel.
+ * <br>Events are collected in a large text buffer that is reused for the whole calendar, and the buffer is only encoded to UTF-8 once it is full.
+ * <br>A calendar of many events is generated in parallel on the common pool by {@link ICSWriter#writeCalendar(List)}, and written in order.
+ * <br>Not thread safe. Use one writer per calendar.
+ */
+public class ICSWriter implements Closeable {
+	/**
+	 * Writes the whole content of a calendar, from {@link ICSWriter#writeHeader()} to {@link ICSWriter#writeFooter()}
+	 */
+	public interface Content {
+		/**
+		 * @param icsWriter The writer to write the calendar with
+		 * @throws IOException Thrown if the calendar could not be written
+		 */
+		void writeTo(ICSWriter icsWriter) throws IOException;
+	}
+
+	/**
+	 * The number of characters collected before they are encoded and written
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/**
+	 * Calendars with fewer events are generated on the calling thread, since splitting them up costs more than it saves
+	 */
+	private static final int PARALLEL_THRESHOLD = 2048;
+	/**
+	 * The number of events generated by each task of a calendar that is generated in parallel
+	 */
+	private static final int CHUNK_SIZE = 256;
+
+	/**
+	 * ICS requires that new lines be CRLF instead of \n.
+	 */
+	private static final String DELIM = "\r\n";
+
+	/**
+	 * The start of the calendar, which is followed by the time zones of the engine
+	 */
+	private static final String HEADER = "BEGIN:VCALENDAR" + DELIM +
+			"VERSION:2.0" + DELIM +
+			"PRODID:<My Calendar>" + DELIM;
+
+	private static final String FOOTER = "END:VCALENDAR" + DELIM;
+
+	private final WritableByteChannel channel;
+	private final StringBuilder text = new StringBuilder(BUFFER_SIZE + BUFFER_SIZE / 4);
+	private final ICSLineFolder folder = new ICSLineFolder(this.text);
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+	private long bytesWritten;
+	/**
+	 * The number of events written so far per section, by the UID of the first event of the section
+	 */
+	private final Map<String, Integer> sectionOccurrences = new HashMap<>();
+	private final CalendarEngine engine;
+
+	/**
+	 * @param channel Where to write the calendar
+	 */
+	public ICSWriter(WritableByteChannel channel) {
+		this(channel, CalendarEntryGenerator.getEngine());
+	}
+
+	/**
+	 * @param channel      Where to write the calendar
+	 * @param termRegistry The dates of the terms used for every event of the calendar
+	 */
+	public ICSWriter(WritableByteChannel channel, TermRegistry termRegistry) {
+		this(channel, CalendarEntryGenerator.getEngine().withTermRegistry(termRegistry));
+	}
+
+	/**
+	 * @param channel Where to write the calendar
+	 * @param engine  Generates every event of the calendar
+	 */
+	public ICSWriter(WritableByteChannel channel, CalendarEngine engine) {
+		this.channel = channel;
+		this.engine = engine;
+	}
+
+	/**
+	 * @param outputStream Where to write the calendar
+	 */
+	public ICSWriter(OutputStream outputStream) {
+		this(Channels.newChannel(outputStream));
+	}
+
+	/**
+	 * Writes the start of the calendar, including the {@code VTIMEZONE} of every zone that the events can be in
+	 *
+	 * @throws IOException Thrown if the buffer could not be written
+	 */
+	public void writeHeader() throws IOException {
+		this.folder.append(HEADER).append(this.engine.getTimeZones());
+		this.flushIfFull();
+	}
+
+	/**
+	 * Writes the event of a course
+	 *
+	 * @param course The course to write the event of
+	 * @throws IOException Thrown if the buffer could not be written
+	 */
+	public void writeEvent(Course course) throws IOException {
+		this.writeEvent(course, this.assignUID(course), this.engine.getFirstRevision());
+	}
+
+	/**
+	 * Writes the event of a course with the given identity and revision
+	 *
+	 * @param course   The course to write the event of
+	 * @param uid      The UID of the event, from {@link ICSWriter#assignUID(Course)}
+	 * @param revision The revision of the event
+	 * @throws IOException Thrown if the buffer could not be written
+	 */
+	public void writeEvent(Course course, String uid, EventRevision revision) throws IOException {
+		long startNanos = ConversionMetrics.startStage();
+		this.engine.generateEvent(course, this.folder, uid, revision);
+		this.folder.endLine();
+		ConversionMetrics.endStage(ConversionStage.GENERATE, startNanos, 1);
+		this.flushIfFull();
+	}
+
+	/**
+	 * Writes an event that was already generated and encoded, i.e. an event shared by several calendars
+	 *
+	 * @param encodedEvent The UTF-8 bytes of a whole event, from {@code BEGIN:VEVENT} to the CRLF after {@code END:VEVENT}
+	 * @throws IOException Thrown if the buffer could not be written
+	 */
+	public void writeEncodedEvent(byte[] encodedEvent) throws IOException {
+		if (this.text.length() > 0) {
+			// Keep the order of what was written before the event
+			this.flush();
+		}
+		int offset = 0;
+		while (offset < encodedEvent.length) {
+			if (!this.bytes.hasRemaining()) {
+				this.writeBytes();
+			}
+			int length = Math.min(this.bytes.remaining(), encodedEvent.length - offset);
+			this.bytes.put(encodedEvent, offset, length);
+			offset += length;
+		}
+	}
+
+	/**
+	 * @return The engine that generates every event of the calendar
+	 */
+	public CalendarEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * @return The dates of the terms used for every event of the calendar
+	 */
+	public TermRegistry getTermRegistry() {
+		return this.engine.getTermRegistry();
+	}
+
+	/**
+	 * Gives the next event of the course's section the UID of its occurrence in this calendar,
+	 * so that a section with several events still has a different UID for each of them
+	 *
+	 * @param course The course of the event
+	 * @return The UID of the event, the same every time the same schedule is written
+	 */
+	public String assignUID(Course course) {
+		String firstUID = CalendarEngine.getUID(course);
+		int occurrence = this.sectionOccurrences.merge(firstUID, 1, Integer::sum);
+		return occurrence == 1 ? firstUID : CalendarEngine.getUID(course, occurrence);
+	}
+
+	/**
+	 * Writes the end of the calendar
+	 *
+	 * @throws IOException Thrown if the buffer could not be written
+	 */
+	public void writeFooter() throws IOException {
+		this.folder.append(FOOTER);
+		this.flushIfFull();
+	}
+
+	/**
+	 * Writes a whole calendar containing an event for every course
+	 *
+	 * @param courses The courses to write an event for
+	 * @throws IOException Thrown if the calendar could not be written
+	 */
+	public void writeCalendar(List<Course> courses) throws IOException {
+		this.writeHeader();
+		if (courses.size() >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+			this.writeEventsInParallel(courses instanceof RandomAccess ? courses : new ArrayList<>(courses));
+		} else {
+			for (Course course : courses) {
+				this.writeEvent(course);
+			}
+		}
+		this.writeFooter();
+		this.flush();
+	}
+
+	/**
+	 * Writes the event of every course, generating the events in chunks on the common pool.
+	 * <br>The UIDs are assigned in order before any event is generated. Each chunk is then generated and encoded into its own buffer,
+	 * and the chunks are written in order, so the calendar is byte for byte the same as when the events are written one by one.
+	 *
+	 * @param courses The courses to write an event for
+	 * @throws IOException Thrown if the calendar could not be written
+	 */
+	private void writeEventsInParallel(List<Course> courses) throws IOException {
+		String[] uids = new String[courses.size()];
+		for (int i = 0; i < uids.length; i++) {
+			uids[i] = this.assignUID(courses.get(i));
+		}
+		EventRevision revision = this.engine.getFirstRevision();
+
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		// Only a few chunks are generated ahead of the chunk being written, so that the memory used does not grow with the calendar
+		int maxPendingChunks = pool.getParallelism() * 2;
+		Deque<CompletableFuture<byte[]>> pendingChunks = new ArrayDeque<>(maxPendingChunks);
+		int nextStart = 0;
+		try {
+			while (nextStart < uids.length || !pendingChunks.isEmpty()) {
+				while (nextStart < uids.length && pendingChunks.size() < maxPendingChunks) {
+					int start = nextStart;
+					int end = Math.min(start + CHUNK_SIZE, uids.length);
+					pendingChunks.add(CompletableFuture.supplyAsync(() -> this.encodeEvents(courses, uids, revision, start, end), pool));
+					nextStart = end;
+				}
+				this.writeEncodedEvent(ICSWriter.getChunk(pendingChunks.poll()));
+			}
+		} finally {
+			for (CompletableFuture<byte[]> pendingChunk : pendingChunks) {
+				pendingChunk.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * Generates the events of a chunk of courses. Only reads the writer, so it can run on any thread
+	 *
+	 * @param courses  The courses of the calendar
+	 * @param uids     The UID of the event of each course
+	 * @param revision The revision of every event
+	 * @param start    The index of the first course of the chunk
+	 * @param end      The index after the last course of the chunk
+	 * @return The UTF-8 bytes of the events of the chunk, each ending with a CRLF
+	 */
+	private byte[] encodeEvents(List<Course> courses, String[] uids, EventRevision revision, int start, int end) {
+		StringBuilder events = new StringBuilder((end - start) * 512);
+		ICSLineFolder eventFolder = new ICSLineFolder(events);
+		for (int i = start; i < end; i++) {
+			long startNanos = ConversionMetrics.startStage();
+			this.engine.generateEvent(courses.get(i), eventFolder, uids[i], revision);
+			eventFolder.endLine();
+			ConversionMetrics.endStage(ConversionStage.GENERATE, startNanos, 1);
+		}
+		return events.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param chunk The task generating a chunk of events
+	 * @return The events of the chunk, once it is done
+	 * @throws IOException Thrown if the thread was interrupted while waiting
+	 */
+	private static byte[] getChunk(CompletableFuture<byte[]> chunk) throws IOException {
+		try {
+			return chunk.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while generating the events");
+		} catch (ExecutionException e) {
+			// Thrown the same way as when the events are generated on the calling thread, i.e. an invalid term
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			} else if (e.getCause() instanceof Error error) {
+				throw error;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * @throws IOException Thrown if the buffer could not be written
+	 */
+	private void flushIfFull() throws IOException {
+		if (this.text.length() >= BUFFER_SIZE) {
+			this.flush();
+		}
+	}
+
+	/**
+	 * Encodes everything in the buffer and writes it to the channel
+	 *
+	 * @throws IOException Thrown if the channel could not be written to
+	 */
+	public void flush() throws IOException {
+		long startNanos = ConversionMetrics.startStage();
+		long bytesBefore = this.bytesWritten;
+		CharBuffer chars = CharBuffer.wrap(this.text);
+		this.encoder.reset();
+		CoderResult result;
+		do {
+			result = this.encoder.encode(chars, this.bytes, true);
+			if (result.isError()) {
+				result.throwException();
+			}
+			this.writeBytes();
+		} while (result.isOverflow());
+		while (this.encoder.flush(this.bytes).isOverflow()) {
+			this.writeBytes();
+		}
+		this.writeBytes();
+		this.text.setLength(0);
+		ConversionMetrics.endStage(ConversionStage.WRITE, startNanos, this.bytesWritten - bytesBefore);
+	}
+
+	/**
+	 * Writes the encoded bytes to the channel
+	 *
+	 * @throws IOException Thrown if the channel could not be written to
+	 */
+	private void writeBytes() throws IOException {
+		this.bytes.flip();
+		while (this.bytes.hasRemaining()) {
+			this.bytesWritten += this.channel.write(this.bytes);
+		}
+		this.bytes.clear();
+	}
+
+	/**
+	 * @return The number of bytes that have been written to the channel
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * Flushes the buffer and closes the channel
+	 *
+	 * @throws IOException Thrown if the buffer could not be written or the channel could not be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			this.flush();
+		} finally {
+			this.channel.close();
+		}
+	}
+
+	/**
+	 * Saves the calendar in {@code file}.
+	 * <br>The calendar is first written to a temporary file next to {@code file}, which is then renamed over {@code file},
+	 * so that nobody reading {@code file} ever sees a calendar that is only partly written.
+	 *
+	 * @param courses The courses to write an event for
+	 * @param file    The file to save the calendar in. Replaced if it already exists
+	 * @return The number of bytes in the calendar
+	 * @throws IOException Thrown if the calendar could not be saved. {@code file} is left as it was
+	 */
+	public static long saveCalendar(List<Course> courses, Path file) throws IOException {
+		return ICSWriter.saveCalendar(file, icsWriter -> icsWriter.writeCalendar(courses));
+	}
+
+	/**
+	 * Saves the calendar written by {@code content} in {@code file}, the same way as {@link ICSWriter#saveCalendar(List, Path)}
+	 *
+	 * @param file    The file to save the calendar in. Replaced if it already exists
+	 * @param content Writes the calendar. Must flush the writer once it is done
+	 * @return The number of bytes in the calendar
+	 * @throws IOException Thrown if the calendar could not be saved. {@code file} is left as it was
+	 */
+	public static long saveCalendar(Path file, Content content) throws IOException {
+		return ICSWriter.saveCalendar(file, CalendarEntryGenerator.getEngine(), content);
+	}
+
+	/**
+	 * Saves the calendar written by {@code content} with a writer of {@code engine} in {@code file}, the same way as {@link ICSWriter#saveCalendar(List, Path)}
+	 *
+	 * @param file    The file to save the calendar in. Replaced if it already exists
+	 * @param engine  Generates the events of the calendar
+	 * @param content Writes the calendar. Must flush the writer once it is done
+	 * @return The number of bytes in the calendar
+	 * @throws IOException Thrown if the calendar could not be saved. {@code file} is left as it was
+	 */
+	public static long saveCalendar(Path file, CalendarEngine engine, Content content) throws IOException {
+		Path absoluteFile = file.toAbsolutePath();
+		Path temporaryFile = ICSWriter.createTemporaryFile(absoluteFile);
+		try {
+			long bytesWritten;
+			try (FileChannel fileChannel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				 ICSWriter icsWriter = new ICSWriter(fileChannel, engine)) {
+				content.writeTo(icsWriter);
+				bytesWritten = icsWriter.getBytesWritten();
+			}
+			ICSWriter.replaceFile(temporaryFile, absoluteFile);
+			return bytesWritten;
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	/**
+	 * Saves a calendar that was already written in {@code file}, the same way as {@link ICSWriter#saveCalendar(List, Path)}
+	 *
+	 * @param calendar The bytes of the calendar
+	 * @param file     The file to save the calendar in. Replaced if it already exists
+	 * @throws IOException Thrown if the calendar could not be saved. {@code file} is left as it was
+	 */
+	public static void saveCalendar(byte[] calendar, Path file) throws IOException {
+		Path absoluteFile = file.toAbsolutePath();
+		Path temporaryFile = ICSWriter.createTemporaryFile(absoluteFile);
+		try {
+			Files.write(temporaryFile, calendar);
+			ICSWriter.replaceFile(temporaryFile, absoluteFile);
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	/**
+	 * @param courses The courses to write an event for
+	 * @return The bytes of the calendar
+	 * @throws IOException Never thrown, as nothing is written outside of memory
+	 */
+	public static byte[] toByteArray(List<Course> courses) throws IOException {
+		return ICSWriter.toByteArray(courses, CalendarEntryGenerator.getEngine());
+	}
+
+	/**
+	 * @param courses The courses to write an event for
+	 * @param engine  Generates every event of the calendar
+	 * @return The bytes of the calendar
+	 * @throws IOException Never thrown, as nothing is written outside of memory
+	 */
+	public static byte[] toByteArray(List<Course> courses, CalendarEngine engine) throws IOException {
+		ByteArrayOutputStream calendar = new ByteArrayOutputStream(courses.size() * 512 + HEADER.length() + engine.getTimeZones().length() + FOOTER.length());
+		ICSWriter icsWriter = new ICSWriter(Channels.newChannel(calendar), engine);
+		icsWriter.writeCalendar(courses);
+		return calendar.toByteArray();
+	}
+
+	/**
+	 * Creates the file that a calendar, or any other file saved the same way, is written to before it replaces {@code file}.
+	 * <br>{@link Files#createTempFile(Path, String, String, FileAttribute[])} would make it readable by its owner only, and the move would keep that,
+	 * so the file is created with the default permissions instead, and with the permissions of {@code file} if it already exists.
+	 *
+	 * @param file The absolute path of the file to replace
+	 * @return A new empty file in the same directory as {@code file}
+	 * @throws IOException Thrown if the file could not be created
+	 */
+	static Path createTemporaryFile(Path file) throws IOException {
+		Path temporaryFile;
+		while (true) {
+			temporaryFile = file.resolveSibling(file.getFileName() + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+			try {
+				Files.createFile(temporaryFile);
+				break;
+			} catch (FileAlreadyExistsException e) {
+				// Another file is being saved under the same name, so try another one
+			}
+		}
+		try {
+			PosixFileAttributeView attributeView = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+			if (attributeView != null && Files.exists(file)) {
+				Files.setPosixFilePermissions(temporaryFile, attributeView.readAttributes().permissions());
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(temporaryFile);
+			throw e;
+		}
+		return temporaryFile;
+	}
+
+	/**
+	 * @param temporaryFile The completely written file
+	 * @param file          The file to replace with {@code temporaryFile}
+	 * @throws IOException Thrown if the file could not be replaced
+	 */
+	static void replaceFile(Path temporaryFile, Path file) throws IOException {
+		try {
+			Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a calendar over a previously written one, keeping the revision of every event that did not change.
+ * <br>An event is matched to the previous event with the same UID, and is unchanged if all of its properties
+ * other than {@code DTSTAMP}, {@code CREATED}, {@code LAST-MODIFIED}, and {@code SEQUENCE} are the same.
+ * <ul>
+ *     <li>An unchanged event is written with its previous revision, so calendar clients do not download it again</li>
+ *     <li>A changed event keeps its {@code CREATED}, and gets the current {@code DTSTAMP} and {@code LAST-MODIFIED} and the next {@code SEQUENCE}</li>
+ *     <li>A new event gets the first revision, the same as without a previous calendar</li>
+ * </ul>
+ * <br>Not thread safe. Use one per calendar.
+ */
+public class IncrementalCalendar {
+	/**
+	 * An event of the previous calendar
+	 */
+	private static class PreviousEvent {
+		private final byte[] fingerprint;
+		private final EventRevision revision;
+
+		private PreviousEvent(byte[] fingerprint, EventRevision revision) {
+			this.fingerprint = fingerprint;
+			this.revision = revision;
+		}
+	}
+
+	private final Map<String, PreviousEvent> previousEvents;
+	private final MessageDigest messageDigest;
+	private final StringBuilder eventBuffer = new StringBuilder(1024);
+	private final ICSLineFolder eventFolder = new ICSLineFolder(this.eventBuffer);
+
+	private int added;
+	private int changed;
+	private int unchanged;
+	private int removed;
+
+	/**
+	 * @param previousCalendar The text of the previously written calendar, or an empty String if there is none
+	 */
+	public IncrementalCalendar(String previousCalendar) {
+		try {
+			this.messageDigest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every JDK has SHA-256
+			throw new IllegalStateException(e);
+		}
+		this.previousEvents = this.readEvents(previousCalendar);
+	}
+
+	/**
+	 * @param file The previously written calendar
+	 * @return An incremental calendar over {@code file}, or over nothing if {@code file} does not exist
+	 * @throws IOException Thrown if {@code file} exists but could not be read
+	 */
+	public static IncrementalCalendar readPrevious(Path file) throws IOException {
+		String previousCalendar;
+		try {
+			previousCalendar = Files.readString(file, StandardCharsets.UTF_8);
+		} catch (NoSuchFileException e) {
+			previousCalendar = "";
+		}
+		return new IncrementalCalendar(previousCalendar);
+	}
+
+	/**
+	 * Saves the calendar of {@code courses} in {@code file} with {@link ICSWriter#saveCalendar(Path, ICSWriter.Content)}.
+	 * Afterward, the counts of this calendar are those of {@code courses} against the previous calendar.
+	 *
+	 * @param courses The courses to write an event for
+	 * @param file    The file to save the calendar in, usually the file that the previous calendar was read from
+	 * @return The number of bytes in the calendar
+	 * @throws IOException Thrown if the calendar could not be saved
+	 */
+	public long save(List<Course> courses, Path file) throws IOException {
+		return this.save(courses, file, CalendarEntryGenerator.getEngine());
+	}
+
+	/**
+	 * Same as {@link IncrementalCalendar#save(List, Path)}, generating the events with {@code engine}
+	 *
+	 * @param courses The courses to write an event for
+	 * @param file    The file to save the calendar in, usually the file that the previous calendar was read from
+	 * @param engine  Generates the events, and stamps the changed events with its time
+	 * @return The number of bytes in the calendar
+	 * @throws IOException Thrown if the calendar could not be saved
+	 */
+	public long save(List<Course> courses, Path file, CalendarEngine engine) throws IOException {
+		return ICSWriter.saveCalendar(file, engine, icsWriter -> this.writeCalendar(courses, icsWriter));
+	}
+
+	/**
+	 * Writes a whole calendar containing an event for every course, reusing the revision of the unchanged events
+	 *
+	 * @param courses   The courses to write an event for
+	 * @param icsWriter Where to write the calendar
+	 * @throws IOException Thrown if the calendar could not be written
+	 */
+	public void writeCalendar(List<Course> courses, ICSWriter icsWriter) throws IOException {
+		Map<String, PreviousEvent> remainingEvents = new HashMap<>(this.previousEvents);
+		this.added = 0;
+		this.changed = 0;
+		this.unchanged = 0;
+
+		icsWriter.writeHeader();
+		CalendarEngine engine = icsWriter.getEngine();
+		String timestamp = engine.getTimestamp();
+		EventRevision firstRevision = engine.getFirstRevision();
+		for (Course course : courses) {
+			String uid = icsWriter.assignUID(course);
+			PreviousEvent previousEvent = remainingEvents.remove(uid);
+			EventRevision revision;
+			if (previousEvent == null) {
+				this.added++;
+				revision = firstRevision;
+			} else {
+				// The revision does not change the fingerprint, so any revision can be used to compare the event
+				this.eventBuffer.setLength(0);
+				engine.generateEvent(course, this.eventFolder, uid, firstRevision);
+				this.eventFolder.endLine();
+				if (Arrays.equals(this.getFingerprint(this.eventBuffer), previousEvent.fingerprint)) {
+					this.unchanged++;
+					revision = previousEvent.revision;
+				} else {
+					this.changed++;
+					revision = previousEvent.revision.next(timestamp);
+				}
+			}
+			icsWriter.writeEvent(course, uid, revision);
+		}
+		this.removed = remainingEvents.size();
+		icsWriter.writeFooter();
+		icsWriter.flush();
+	}
+
+	/**
+	 * @param calendar The text of a calendar
+	 * @return The fingerprint and the revision of each event of the calendar, by UID
+	 */
+	private Map<String, PreviousEvent> readEvents(String calendar) {
+		Map<String, PreviousEvent> events = new HashMap<>();
+		String uid = null;
+		String timestamp = null;
+		String created = null;
+		String lastModified = null;
+		int sequence = 0;
+		boolean inEvent = false;
+		for (String line : IncrementalCalendar.unfold(calendar).split("\r?\n")) {
+			if (line.equals("BEGIN:VEVENT")) {
+				inEvent = true;
+				uid = timestamp = created = lastModified = null;
+				sequence = 0;
+				this.messageDigest.reset();
+			}
+			if (!inEvent) {
+				continue;
+			}
+			String name = IncrementalCalendar.getPropertyName(line);
+			String value = line.substring(Math.min(line.length(), name.length() + 1));
+			switch (name) {
+				case "UID" -> uid = value;
+				case "DTSTAMP" -> timestamp = value;
+				case "CREATED" -> created = value;
+				case "LAST-MODIFIED" -> lastModified = value;
+				case "SEQUENCE" -> sequence = IncrementalCalendar.parseSequence(value);
+			}
+			this.updateFingerprint(name, line);
+			if (line.equals("END:VEVENT")) {
+				inEvent = false;
+				if (uid != null) {
+					String eventTimestamp = timestamp != null ? timestamp : CalendarEntryGenerator.getTimestamp();
+					EventRevision revision = new EventRevision(eventTimestamp, created != null ? created : eventTimestamp,
+							lastModified != null ? lastModified : eventTimestamp, sequence);
+					events.put(uid, new PreviousEvent(this.messageDigest.digest(), revision));
+				}
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * @param event The folded text of an event, from {@code BEGIN:VEVENT} to {@code END:VEVENT}
+	 * @return The hash of every line of the event, except for the lines of its revision
+	 */
+	private byte[] getFingerprint(CharSequence event) {
+		this.messageDigest.reset();
+		for (String line : IncrementalCalendar.unfold(event).split("\r\n")) {
+			this.updateFingerprint(IncrementalCalendar.getPropertyName(line), line);
+		}
+		return this.messageDigest.digest();
+	}
+
+	/**
+	 * @param name The name of the property of the line
+	 * @param line An unfolded line of an event
+	 */
+	private void updateFingerprint(String name, String line) {
+		switch (name) {
+			case "DTSTAMP", "CREATED", "LAST-MODIFIED", "SEQUENCE" -> {
+				// The revision is not part of the fingerprint
+			}
+			default -> {
+				this.messageDigest.update(line.getBytes(StandardCharsets.UTF_8));
+				this.messageDigest.update((byte) '\n');
+			}
+		}
+	}
+
+	/**
+	 * @param text Folded ICS text
+	 * @return The text with every folded line joined back together
+	 */
+	private static String unfold(CharSequence text) {
+		StringBuilder unfolded = new StringBuilder(text.length());
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c == '\r' && i + 2 < length && text.charAt(i + 1) == '\n' && (text.charAt(i + 2) == ' ' || text.charAt(i + 2) == '\t')) {
+				i += 2;
+			} else if (c == '\n' && i + 1 < length && (text.charAt(i + 1) == ' ' || text.charAt(i + 1) == '\t')) {
+				i++;
+			} else {
+				unfolded.append(c);
+			}
+		}
+		return unfolded.toString();
+	}
+
+	/**
+	 * @param line An unfolded line
+	 * @return The name of the property of the line, i.e. {@code DTSTART} for {@code DTSTART;TZID=America/New_York:20230824T080000}
+	 */
+	private static String getPropertyName(String line) {
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == ':' || c == ';') {
+				return line.substring(0, i);
+			}
+		}
+		return line;
+	}
+
+	/**
+	 * @param value The value of a {@code SEQUENCE}
+	 * @return The sequence, or 0 if it is not a number
+	 */
+	private static int parseSequence(String value) {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * @return The number of events that were not in the previous calendar
+	 */
+	public int getAdded() {
+		return added;
+	}
+
+	/**
+	 * @return The number of events that were in the previous calendar, but changed
+	 */
+	public int getChanged() {
+		return changed;
+	}
+
+	/**
+	 * @return The number of events that are the same as in the previous calendar
+	 */
+	public int getUnchanged() {
+		return unchanged;
+	}
+
+	/**
+	 * @return The number of events of the previous calendar that are no longer in the calendar
+	 */
+	public int getRemoved() {
+		return removed;
+	}
+
+	@Override
+	public String toString() {
+		return "added=" + added + " changed=" + changed + " unchanged=" + unchanged + " removed=" + removed;
+	}
+}
@@ -0,0 +1,106 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records latencies in nanoseconds into buckets, so that percentiles can be read at any time.
+ * <br>Every power of two is split into {@value #SUB_BUCKET_COUNT} buckets, so a percentile is never off by more than about 6%.
+ * <br>Recording is lock free, so the histogram can be shared between threads.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * @param nanos The latency to record. Negative latencies are recorded as 0
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		this.buckets.incrementAndGet(LatencyHistogram.getBucketIndex(nanos));
+		this.count.incrementAndGet();
+		this.totalNanos.addAndGet(nanos);
+		this.maxNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	/**
+	 * @param nanos The latency
+	 * @return The index of the bucket that the latency is counted in
+	 */
+	private static int getBucketIndex(long nanos) {
+		if (nanos < SUB_BUCKET_COUNT) {
+			return (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * @param index The index of the bucket
+	 * @return The highest latency that is counted in the bucket
+	 */
+	private static long getBucketUpperBound(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		long subBucket = index % SUB_BUCKET_COUNT;
+		long lowerBound = (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * @param percentile The percentile between 0 and 100, i.e. 99 for the 99th percentile
+	 * @return The latency in nanoseconds that {@code percentile} percent of the recorded latencies are at or below, or 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		long total = this.count.get();
+		if (total == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += this.buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(LatencyHistogram.getBucketUpperBound(i), this.maxNanos.get());
+			}
+		}
+		return this.maxNanos.get();
+	}
+
+	/**
+	 * @return The number of recorded latencies
+	 */
+	public long getCount() {
+		return this.count.get();
+	}
+
+	/**
+	 * @return The average of the recorded latencies in nanoseconds, or 0 if nothing was recorded
+	 */
+	public double getMean() {
+		long total = this.count.get();
+		return total == 0 ? 0 : (double) this.totalNanos.get() / total;
+	}
+
+	/**
+	 * @return The highest recorded latency in nanoseconds
+	 */
+	public long getMax() {
+		return this.maxNanos.get();
+	}
+
+	/**
+	 * @return The count, mean, p50, p90, p99, p99.9, and max, in milliseconds
+	 */
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+				getCount(), getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(90) / 1e6,
+				getPercentile(99) / 1e6, getPercentile(99.9) / 1e6, getMax() / 1e6);
+	}
+}
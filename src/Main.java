@@ -1,13 +1,37 @@
 import javax.swing.*;
 import javax.swing.filechooser.FileSystemView;
-import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 
 public class Main {
-	private static List<Course> courses;
-
 	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("--batch")) {
+			// Convert whole directories without any user interface
+			System.exit(BatchConverter.run(args));
+		}
+		if (args.length > 0 && args[0].equals("--fan-out")) {
+			// Write a calendar per room and per instructor of a catalog export
+			System.exit(CalendarFanOut.run(args));
+		}
+		if (args.length > 0 && args[0].equals("--conflicts")) {
+			// Report the courses that meet at the same time
+			System.exit(ConflictDetector.run(args));
+		}
+		if (args.length > 0 && args[0].equals("--free-busy")) {
+			// Find the times that a group of schedules are all free
+			System.exit(FreeBusyGrid.run(args));
+		}
+		if (args.length > 0 && args[0].equals("--serve")) {
+			// Convert uploaded schedules over HTTP until the program is stopped
+			int exitCode = ConversionServer.run(args);
+			if (exitCode != 0) System.exit(exitCode);
+			return;
+		}
+
 		// Make the selector look nicer
 		try {
 			UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -18,90 +42,76 @@ public class Main {
 		// Ask the user to choose a file
 		JFileChooser jFileChooser = new JFileChooser("e:/downloads", FileSystemView.getFileSystemView());
 		File inputFile = XLSXReader.getInputFile(jFileChooser);
-		if (inputFile != null) {
-			Main.courses = XLSXReader.readXLSXFile(inputFile);
+		if (inputFile == null) {
+			System.err.println("No schedule was chosen.");
+			return;
+		}
+		List<Course> courses = ScheduleReader.readFile(inputFile);
+
+		// Give the rows of a section that meets at the same time and place on several rows a single event
+		SectionMerger sectionMerger = new SectionMerger();
+		courses = sectionMerger.merge(courses);
+		if (sectionMerger.getSavedEvents() > 0) {
+			System.out.println("Sections: " + sectionMerger);
 		}
 
 		// Get the terms
 		int[] terms = TermDateGetter.getTerms();
-		CalendarEntryGenerator.setTerms(terms);
+		CalendarEngine engine = CalendarEngine.of(terms);
+
+		// Warn about the sections that overlap, which are still saved
+		for (ConflictDetector.Conflict conflict : new ConflictDetector(engine.getTermRegistry()).findConflicts(courses)) {
+			System.err.println("Warning: " + conflict);
+		}
+
+		// Only update the events that changed since the calendar was last saved
+		boolean incremental = Arrays.asList(args).contains("--incremental");
 
-//		Main.printCalendar();
-		Main.saveCalendar("calendar.ics");
+//		Main.printCalendar(engine, courses);
+		Main.saveCalendar(engine, courses, "calendar.ics", incremental);
 	}
 
 	/**
 	 * Prints the calendar using the ICS format
+	 *
+	 * @param engine  Generates the events
+	 * @param courses The courses to print an event for
 	 */
-	private static void printCalendar() {
-		System.out.println("""
-				BEGIN:VCALENDAR
-				PRODID:-//EN
-				VERSION:2.0
-				BEGIN:VTIMEZONE
-				TZID:America/New_York
-				BEGIN:DAYLIGHT
-				TZOFFSETFROM:-0500
-				TZOFFSETTO:-0400
-				TZNAME:EDT
-				END:DAYLIGHT
-				END:VTIMEZONE""");
-		for (Course course : courses) {
-			System.out.println(CalendarEntryGenerator.generateEvent(course));
+	private static void printCalendar(CalendarEngine engine, List<Course> courses) {
+		try {
+			// Not closed, since that would close System.out
+			new ICSWriter(Channels.newChannel(System.out), engine).writeCalendar(courses);
+			System.out.flush();
+		} catch (IOException e) {
+			System.err.println("An error has occurred while printing the calendar.");
+			e.printStackTrace();
 		}
-		System.out.println("END:VCALENDAR");
 	}
 
 	/**
 	 * Saves the calendar in fileName
 	 *
-	 * @param fileName The name of the file to save the calendar in. Preferably in ICS format (.ics)
+	 * @param engine      Generates the events
+	 * @param courses     The courses to save an event for
+	 * @param fileName    The name of the file to save the calendar in. Preferably in ICS format (.ics)
+	 * @param incremental True to keep the revision of the events that did not change since the calendar in fileName was saved
 	 */
-	private static void saveCalendar(String fileName) {
+	private static void saveCalendar(CalendarEngine engine, List<Course> courses, String fileName, boolean incremental) {
 		System.out.print("Saving the calendar...");
-		File file;
 		try {
-			file = new File(fileName);
-			if (!file.createNewFile()) {
-				// The calendar exists, so delete the file
-				System.out.println("calendar already exists.");
-				System.out.print("Overriding...");
-				if (!file.delete()) {
-					System.out.println("error deleting previous calendar.");
-					System.out.println("Please manually delete the previous calendar and try again");
-					return;
-				}
-			}
-			// ICS requires that new lines be CRLF instead of \n.
-			final String delim = "\r\n";
-
-			// Write the calendar to the file
-			Writer fileWriter = new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8);
-			fileWriter.write("BEGIN:VCALENDAR" + delim +
-					"VERSION:2.0" + delim +
-					"PRODID:<My Calendar>" + delim +
-					"BEGIN:VTIMEZONE" + delim +
-					"TZID:America/New_York" + delim +
-					"BEGIN:DAYLIGHT" + delim +
-					"TZOFFSETFROM:-0500" + delim +
-					"TZOFFSETTO:-0400" + delim +
-					"TZNAME:EDT" + delim +
-					"END:DAYLIGHT" + delim +
-					"END:VTIMEZONE" + delim);
-			int i = 0;
-			for (Course course : courses) {
-				fileWriter.write(CalendarEntryGenerator.generateEvent(course));
-				if (i < courses.size() - 1) fileWriter.write(delim);
-				i++;
+			Path file = Path.of(fileName);
+			if (incremental) {
+				IncrementalCalendar incrementalCalendar = IncrementalCalendar.readPrevious(file);
+				incrementalCalendar.save(courses, file, engine);
+				System.out.println("saved! " + incrementalCalendar);
+			} else {
+				// The calendar is replaced at once if it already exists
+				engine.saveCalendar(courses, file);
+				System.out.println("saved!");
 			}
-			fileWriter.write("\r\nEND:VCALENDAR");
-			fileWriter.close();
-			System.out.println("saved!");
-
 		} catch (IOException e) {
 			System.err.println("An error has occurred while saving the calendar.");
 			e.printStackTrace();
 		}
 	}
 }
-
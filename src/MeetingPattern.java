@@ -0,0 +1,234 @@
+/**
+ * The days and times that a course meets, parsed once from the meetings of a {@link Course}.
+ * <br>The days are stored as a bitmask and the times as minutes since midnight, so they can be read without parsing any strings.
+ * <br>Meetings are in the format {@code M-T-W-R-F | 10:00 AM - 10:50 AM}
+ */
+public final class MeetingPattern {
+	public static final int MONDAY = 1;
+	public static final int TUESDAY = 1 << 1;
+	public static final int WEDNESDAY = 1 << 2;
+	public static final int THURSDAY = 1 << 3;
+	public static final int FRIDAY = 1 << 4;
+
+	/**
+	 * The number of different sets of weekdays
+	 */
+	public static final int DAY_MASK_COUNT = 1 << 5;
+
+	/**
+	 * The ICS name of each day, in the order of the bits of the mask
+	 */
+	private static final String[] DAY_NAMES = {"MO", "TU", "WE", "TH", "FR"};
+
+	/**
+	 * The ICS {@code BYDAY} of every day mask, i.e. {@code MO,WE,FR} for {@code MONDAY | WEDNESDAY | FRIDAY}
+	 */
+	private static final String[] BY_DAY = new String[DAY_MASK_COUNT];
+
+	static {
+		for (int mask = 0; mask < DAY_MASK_COUNT; mask++) {
+			StringBuilder byDay = new StringBuilder();
+			for (int day = 0; day < DAY_NAMES.length; day++) {
+				if ((mask & (1 << day)) != 0) {
+					if (byDay.length() > 0) byDay.append(',');
+					byDay.append(DAY_NAMES[day]);
+				}
+			}
+			BY_DAY[mask] = byDay.toString();
+		}
+	}
+
+	private final int days;
+	private final int startMinute;
+	private final int endMinute;
+
+	/**
+	 * @param days        The bitmask of the days, made of {@link MeetingPattern#MONDAY} through {@link MeetingPattern#FRIDAY}
+	 * @param startMinute The start time in minutes since midnight
+	 * @param endMinute   The end time in minutes since midnight
+	 */
+	public MeetingPattern(int days, int startMinute, int endMinute) {
+		this.days = days;
+		this.startMinute = startMinute;
+		this.endMinute = endMinute;
+	}
+
+	/**
+	 * @param meetings The meetings in the format {@code M-T-W-R-F | 10:00 AM - 10:50 AM}
+	 * @return The parsed meetings
+	 * @throws RuntimeException Thrown if the meetings are on a Saturday or a Sunday, or are not in the expected format
+	 */
+	public static MeetingPattern parse(String meetings) {
+		int separatorIndex = meetings.indexOf('|');
+		int timeSeparatorIndex = meetings.lastIndexOf('-');
+		if (separatorIndex < 1 || timeSeparatorIndex < separatorIndex) {
+			throw new IllegalArgumentException("Invalid meetings: " + meetings);
+		}
+
+		int days = 0;
+		for (int i = 0; i < separatorIndex - 1; i++) {
+			switch (meetings.charAt(i)) {
+				case 'M' -> days |= MONDAY;
+				case 'T' -> days |= TUESDAY;
+				case 'W' -> days |= WEDNESDAY;
+				case 'R' -> days |= THURSDAY;
+				case 'F' -> days |= FRIDAY;
+				case 'S' -> throw new RuntimeException("Error! There is either a Saturday or a Sunday within the meeting dates, which is unsupported.");
+				case '-', ' ' -> {
+				}
+				default -> throw new IllegalArgumentException("Invalid day in meetings: " + meetings);
+			}
+		}
+
+		int startMinute = MeetingPattern.parseTime(meetings, separatorIndex + 2, timeSeparatorIndex - 1);
+		int endMinute = MeetingPattern.parseTime(meetings, timeSeparatorIndex + 2, meetings.length());
+		return new MeetingPattern(days, startMinute, endMinute);
+	}
+
+	/**
+	 * @param meetings The meetings in the format {@code M-T-W-R-F | 10:00 AM - 10:50 AM}
+	 * @return The parsed meetings, or null if they could not be parsed
+	 */
+	public static MeetingPattern tryParse(String meetings) {
+		if (meetings == null) return null;
+		try {
+			return MeetingPattern.parse(meetings);
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param text  The text containing the time
+	 * @param start The index of the first character of the time
+	 * @param end   The index after the last character of the time
+	 * @return The time in the format {@code HH:MM AM} as minutes since midnight
+	 */
+	private static int parseTime(String text, int start, int end) {
+		int colonIndex = text.indexOf(':', start);
+		if (colonIndex < 0 || colonIndex >= end) {
+			throw new IllegalArgumentException("Invalid time: " + text.substring(start, end));
+		}
+		int hour = MeetingPattern.parseDigits(text, start, colonIndex);
+		int minute = MeetingPattern.parseDigits(text, colonIndex + 1, colonIndex + 3);
+		int pmIndex = text.indexOf('P', colonIndex);
+		boolean isPM = pmIndex >= 0 && pmIndex < end;
+		// 12 AM is 0, and 12 PM is 12
+		if (hour == 12) hour = 0;
+		if (isPM) hour += 12;
+		return hour * 60 + minute;
+	}
+
+	/**
+	 * @param text  The text containing the digits
+	 * @param start The index of the first digit
+	 * @param end   The index after the last digit
+	 * @return The value of the digits
+	 */
+	private static int parseDigits(String text, int start, int end) {
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new IllegalArgumentException("Invalid number: " + text.substring(start, end));
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Appends the time in the ICS format {@code HHMMSS}
+	 *
+	 * @param out         The buffer to append the time to
+	 * @param minuteOfDay The time in minutes since midnight
+	 */
+	public static void appendTime(StringBuilder out, int minuteOfDay) {
+		int hour = minuteOfDay / 60;
+		int minute = minuteOfDay % 60;
+		out.append((char) ('0' + hour / 10)).append((char) ('0' + hour % 10))
+				.append((char) ('0' + minute / 10)).append((char) ('0' + minute % 10))
+				.append("00");
+	}
+
+	/**
+	 * Appends the time in the ICS format {@code HHMMSS}
+	 *
+	 * @param out         The folder to append the time to
+	 * @param minuteOfDay The time in minutes since midnight
+	 */
+	public static void appendTime(ICSLineFolder out, int minuteOfDay) {
+		int hour = minuteOfDay / 60;
+		int minute = minuteOfDay % 60;
+		out.append((char) ('0' + hour / 10)).append((char) ('0' + hour % 10))
+				.append((char) ('0' + minute / 10)).append((char) ('0' + minute % 10))
+				.append("00");
+	}
+
+	/**
+	 * @param minuteOfDay The time in minutes since midnight
+	 * @return The time in the ICS format {@code HHMMSS}
+	 */
+	public static String formatTime(int minuteOfDay) {
+		StringBuilder time = new StringBuilder(6);
+		MeetingPattern.appendTime(time, minuteOfDay);
+		return time.toString();
+	}
+
+	/**
+	 * @param days The bitmask of the days
+	 * @return The days in the ICS format of {@code BYDAY}, i.e. {@code MO,WE,FR}
+	 */
+	public static String getByDay(int days) {
+		return BY_DAY[days];
+	}
+
+	/**
+	 * @return The bitmask of the days, made of {@link MeetingPattern#MONDAY} through {@link MeetingPattern#FRIDAY}
+	 */
+	public int getDays() {
+		return days;
+	}
+
+	/**
+	 * @return The days in the ICS format of {@code BYDAY}, i.e. {@code MO,WE,FR}
+	 */
+	public String getByDay() {
+		return BY_DAY[days];
+	}
+
+	/**
+	 * @return The start time in minutes since midnight
+	 */
+	public int getStartMinute() {
+		return startMinute;
+	}
+
+	/**
+	 * @return The end time in minutes since midnight
+	 */
+	public int getEndMinute() {
+		return endMinute;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof MeetingPattern that)) return false;
+		return days == that.days && startMinute == that.startMinute && endMinute == that.endMinute;
+	}
+
+	@Override
+	public int hashCode() {
+		return (days * 31 + startMinute) * 31 + endMinute;
+	}
+
+	@Override
+	public String toString() {
+		return "MeetingPattern{" +
+				"days=" + getByDay() +
+				", startTime=" + formatTime(startMinute) +
+				", endTime=" + formatTime(endMinute) +
+				'}';
+	}
+}
@@ -0,0 +1,88 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a schedule in whichever format it was exported in, found from its first bytes instead of its name.
+ * <br>A workbook is a ZIP archive (XLSX) or an OLE2 document (a legacy XLS that aspose-cells can repair), and is read by {@link XLSXReader}.
+ * Anything else is read as CSV by {@link CSVReader}, which skips POI and aspose-cells altogether.
+ */
+public class ScheduleReader {
+	private static final byte[] ZIP_MAGIC = {'P', 'K', 3, 4};
+	private static final byte[] OLE2_MAGIC = {(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0};
+
+	/**
+	 * @param bytes The schedule, or at least its first bytes
+	 * @return True if the schedule is a workbook, false if it is CSV
+	 */
+	public static boolean isWorkbook(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return CSVReader.startsWith(buffer, ZIP_MAGIC) || CSVReader.startsWith(buffer, OLE2_MAGIC);
+	}
+
+	/**
+	 * @param file The schedule
+	 * @return True if the schedule is a workbook, false if it is CSV
+	 * @throws IOException Thrown if the file could not be read
+	 */
+	public static boolean isWorkbook(File file) throws IOException {
+		try (InputStream inputStream = new FileInputStream(file)) {
+			return ScheduleReader.isWorkbook(inputStream.readNBytes(ZIP_MAGIC.length));
+		}
+	}
+
+	/**
+	 * Adds each row of the schedule to {@code courseTable}, with {@link XLSXReader#parseXLSXFile(File, CourseTable)} or {@link CSVReader#parseCSVFile(File, CourseTable)}
+	 *
+	 * @param file        The schedule
+	 * @param courseTable Receives each row in the order that they appear in the schedule
+	 * @return The number of rows that were read
+	 * @throws Exception Thrown if the schedule could not be opened, repaired, or parsed
+	 */
+	public static int parseFile(File file, CourseTable courseTable) throws Exception {
+		if (ScheduleReader.isWorkbook(file)) {
+			return XLSXReader.parseXLSXFile(file, courseTable);
+		}
+		return CSVReader.parseCSVFile(file, courseTable);
+	}
+
+	/**
+	 * Same as {@link ScheduleReader#parseFile(File, CourseTable)}, for a schedule that is already in memory, i.e. an upload
+	 *
+	 * @param bytes       The schedule
+	 * @param courseTable Receives each row in the order that they appear in the schedule
+	 * @return The number of rows that were read
+	 * @throws Exception Thrown if the schedule could not be opened, repaired, or parsed
+	 */
+	public static int parseBytes(byte[] bytes, CourseTable courseTable) throws Exception {
+		if (ScheduleReader.isWorkbook(bytes)) {
+			return XLSXReader.parseXLSXBytes(bytes, courseTable);
+		}
+		return CSVReader.parseCSVBytes(bytes, courseTable);
+	}
+
+	/**
+	 * Stores each class in a {@link Course}, reading a workbook with {@link XLSXReader#readXLSXFile(File)}
+	 *
+	 * @param file The schedule
+	 * @return The courses in the order that they appear in the schedule, or as many as could be read before an error, which is printed
+	 */
+	public static List<Course> readFile(File file) {
+		List<Course> courses = new ArrayList<>();
+		try {
+			if (ScheduleReader.isWorkbook(file)) {
+				return XLSXReader.readXLSXFile(file);
+			}
+			CSVReader.parseCSVFile(file, courses::add);
+		} catch (Exception e) {
+			ConversionMetrics.recordError(e);
+			System.err.println("An error occurred when reading the CSV file.");
+			e.printStackTrace();
+		}
+		return courses;
+	}
+}
@@ -0,0 +1,165 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Merges the rows of a schedule that are the same section meeting at the same time in the same place, so that each gets one event instead of one per row.
+ * <br>Exports often list a section once per meeting pattern, i.e. {@code M-W | 10:00 AM - 10:50 AM} and {@code F | 10:00 AM - 10:50 AM}.
+ * These become a single event whose {@code BYDAY} has the days of every row, which makes the calendar smaller and gives clients fewer events to sync and expand.
+ * <br>Rows are grouped by section, term, start and end time, and location with a hash index, in a single pass. Rows of the same section at different times
+ * stay separate events, and keep the identity of their section: {@link ICSWriter#assignUID(Course)} derives their UIDs from the section and the term.
+ * <br>The courses keep the order of the first row of each group. A row that is not merged is kept as is, and a row whose meetings cannot be parsed
+ * is never merged, so its error is still reported when its event is generated.
+ * <br>Can be reused, but not by several threads at once, since it keeps the number of events saved by the last merge.
+ */
+public class SectionMerger {
+	/**
+	 * The letter of each day in the meetings of a schedule, in the order of the bits of {@link MeetingPattern#getDays()}
+	 */
+	private static final char[] DAY_LETTERS = {'M', 'T', 'W', 'R', 'F'};
+
+	/**
+	 * What the rows of one event have in common
+	 */
+	private static final class SectionKey {
+		private final String section;
+		private final Object term;
+		private final int startMinute;
+		private final int endMinute;
+		private final String location;
+		private final int hashCode;
+
+		/**
+		 * @param course         The course of the row
+		 * @param meetingPattern The parsed meetings of the row
+		 */
+		private SectionKey(Course course, MeetingPattern meetingPattern) {
+			this.section = course.getSection();
+			// A term that could not be parsed is still compared by its text
+			Term parsedTerm = course.getParsedTerm();
+			this.term = parsedTerm != null ? parsedTerm : course.getTerm();
+			this.startMinute = meetingPattern.getStartMinute();
+			this.endMinute = meetingPattern.getEndMinute();
+			this.location = course.getLocation();
+			this.hashCode = ((Objects.hash(this.section, this.term, this.location) * 31) + this.startMinute) * 31 + this.endMinute;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof SectionKey that)) return false;
+			return startMinute == that.startMinute && endMinute == that.endMinute && section.equals(that.section)
+					&& Objects.equals(term, that.term) && Objects.equals(location, that.location);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	private int mergedRows;
+	private int mergedEvents;
+
+	/**
+	 * @param courses The courses of a schedule, one per row
+	 * @return The courses with the rows of each section, term, time, and location merged into one course that meets on the days of all of them
+	 */
+	public List<Course> merge(List<Course> courses) {
+		List<Course> merged = new ArrayList<>(courses.size());
+		Map<SectionKey, Integer> eventIndexes = new HashMap<>(courses.size() * 2);
+		// The days and the instructors of each merged event, by its index in merged. Only filled for the events of more than one row
+		Map<Integer, int[]> daysByEvent = new HashMap<>();
+		Map<Integer, List<String>> instructorsByEvent = new HashMap<>();
+		for (Course course : courses) {
+			MeetingPattern meetingPattern = course.getSection() != null ? SectionMerger.getMeetingPattern(course) : null;
+			if (meetingPattern == null) {
+				merged.add(course);
+				continue;
+			}
+			Integer eventIndex = eventIndexes.putIfAbsent(new SectionKey(course, meetingPattern), merged.size());
+			if (eventIndex == null) {
+				merged.add(course);
+				continue;
+			}
+
+			// Another row of an event that is already in the schedule
+			Course first = merged.get(eventIndex);
+			daysByEvent.computeIfAbsent(eventIndex, index -> new int[]{first.getMeetingPattern().getDays()})[0] |= meetingPattern.getDays();
+			List<String> instructors = instructorsByEvent.computeIfAbsent(eventIndex, index -> new ArrayList<>(List.of(Objects.toString(first.getInstructor(), ""))));
+			String instructor = course.getInstructor();
+			if (instructor != null && !instructors.contains(instructor)) {
+				instructors.add(instructor);
+			}
+		}
+
+		for (Map.Entry<Integer, int[]> event : daysByEvent.entrySet()) {
+			int eventIndex = event.getKey();
+			merged.set(eventIndex, SectionMerger.mergeRows(merged.get(eventIndex), event.getValue()[0], instructorsByEvent.get(eventIndex)));
+		}
+		this.mergedRows = courses.size() - merged.size() + daysByEvent.size();
+		this.mergedEvents = daysByEvent.size();
+		return merged;
+	}
+
+	/**
+	 * @param course A row of the schedule
+	 * @return The meetings of the row, parsed once by the course and kept for its event, or null if they could not be parsed, so the row is not merged
+	 */
+	private static MeetingPattern getMeetingPattern(Course course) {
+		try {
+			return course.getMeetingPattern();
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param first       The first row of the event
+	 * @param days        The bitmask of the days of every row of the event
+	 * @param instructors The different instructors of the rows, in the order that they appear
+	 * @return A course like the first row that meets on every day of the event
+	 */
+	private static Course mergeRows(Course first, int days, List<String> instructors) {
+		MeetingPattern firstPattern = first.getMeetingPattern();
+		String firstMeetings = first.getMeetings();
+		// The times are the same in every row, so they are kept as the first row wrote them
+		StringBuilder meetings = new StringBuilder(firstMeetings.length() + 8);
+		for (int day = 0; day < DAY_LETTERS.length; day++) {
+			if ((days & (1 << day)) != 0) {
+				if (meetings.length() > 0) meetings.append('-');
+				meetings.append(DAY_LETTERS[day]);
+			}
+		}
+		meetings.append(' ').append(firstMeetings, firstMeetings.indexOf('|'), firstMeetings.length());
+
+		instructors.remove("");
+		Course course = new Course(first.getTerm(), first.getCourse(), first.getFormat(), meetings.toString(), first.getLocation(),
+				instructors.isEmpty() ? first.getInstructor() : String.join(", ", instructors), first.getDelivery());
+		course.setParsedTerm(first.getParsedTerm());
+		course.setSemester(first.isSemester());
+		course.setMeetingPattern(new MeetingPattern(days, firstPattern.getStartMinute(), firstPattern.getEndMinute()));
+		return course;
+	}
+
+	/**
+	 * @return The number of rows of the last merge that were merged into another row, i.e. the number of events that it saved
+	 */
+	public int getSavedEvents() {
+		return mergedRows - mergedEvents;
+	}
+
+	/**
+	 * @return The number of events of the last merge that were made of several rows
+	 */
+	public int getMergedEvents() {
+		return mergedEvents;
+	}
+
+	@Override
+	public String toString() {
+		return "merged " + mergedRows + " rows into " + mergedEvents + " events, saving " + this.getSavedEvents() + " events";
+	}
+}
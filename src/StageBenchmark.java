@@ -0,0 +1,222 @@
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the throughput and allocation rate of each stage of a conversion on generated schedules.
+ * <br>Each stage is run repeatedly for a fixed time per iteration, first for the warmup iterations, which are not reported, and then for the measured iterations.
+ * Allocation is measured per thread, the same way as the GC profiler of JMH, so it does not depend on when the garbage collector runs.
+ * <br>Usage: {@code StageBenchmark [--sizes 10,1000,100000] [--stages repair,parse,parse-dom,build,generate,write] [--warmup 3] [--iterations 5] [--time 1000]}
+ */
+public class StageBenchmark {
+	private static final long SEED = 42;
+
+	/**
+	 * Keeps the results of each operation alive, so that the JIT cannot remove the work done for them
+	 */
+	private static volatile long sink;
+
+	/**
+	 * A stage of the conversion, run over a schedule of a given size
+	 */
+	private interface Stage {
+		/**
+		 * @return A value depending on the work done, passed to {@link StageBenchmark#sink}
+		 * @throws Exception Thrown if the stage fails
+		 */
+		long run() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = {10, 1000, 100000};
+		List<String> stageNames = List.of("repair", "parse", "parse-dom", "build", "generate", "write");
+		int warmupIterations = 3;
+		int iterations = 5;
+		long iterationMillis = 1000;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "--sizes" -> sizes = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+				case "--stages" -> stageNames = List.of(args[i + 1].split(","));
+				case "--warmup" -> warmupIterations = Integer.parseInt(args[i + 1]);
+				case "--iterations" -> iterations = Integer.parseInt(args[i + 1]);
+				case "--time" -> iterationMillis = Long.parseLong(args[i + 1]);
+				default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+			}
+		}
+
+		CalendarEntryGenerator.setTerms(SyntheticScheduleGenerator.TERM_DATES);
+		System.out.printf("%-10s %8s %12s %14s %16s %10s%n", "stage", "rows", "ops/s", "rows/s", "alloc bytes/row", "gc count");
+		for (int size : sizes) {
+			Map<String, Stage> stages = StageBenchmark.createStages(size);
+			for (String stageName : stageNames) {
+				Stage stage = stages.get(stageName);
+				if (stage == null) {
+					throw new IllegalArgumentException("Unknown stage: " + stageName);
+				}
+				StageBenchmark.measure(stageName, size, stage, warmupIterations, iterations, iterationMillis);
+			}
+		}
+	}
+
+	/**
+	 * Generates a schedule of {@code size} rows and prepares every stage to run on it
+	 *
+	 * @param size The number of rows in the schedule
+	 * @return The stages by name
+	 * @throws IOException Thrown if the generated workbook could not be written
+	 */
+	private static Map<String, Stage> createStages(int size) throws IOException {
+		File workbookFile = File.createTempFile("schedule-" + size + "-", ".xlsx");
+		workbookFile.deleteOnExit();
+		SyntheticScheduleGenerator.writeWorkbook(workbookFile, size, SEED);
+		byte[] workbookBytes = Files.readAllBytes(workbookFile.toPath());
+		List<String[]> rows = SyntheticScheduleGenerator.generateRows(size, SEED);
+		List<Course> courses = new ArrayList<>(size);
+		for (String[] row : rows) {
+			courses.add(StageBenchmark.buildCourse(row));
+		}
+		StringBuilder eventBuffer = new StringBuilder(1024);
+		ICSLineFolder eventFolder = new ICSLineFolder(eventBuffer);
+
+		Map<String, Stage> stages = new LinkedHashMap<>();
+		stages.put("repair", () -> XLSXReader.fixCorruptXLSXFile(new ByteArrayInputStream(workbookBytes)).length);
+		stages.put("parse", () -> {
+			long[] count = new long[1];
+			XLSXReader.parseXLSXFile(workbookFile, course -> count[0]++);
+			return count[0];
+		});
+		stages.put("parse-dom", () -> XLSXReader.readXLSXFile(workbookFile).size());
+		stages.put("build", () -> {
+			long hash = 0;
+			for (String[] row : rows) {
+				hash += StageBenchmark.buildCourse(row).hashCode();
+			}
+			return hash;
+		});
+		stages.put("generate", () -> {
+			long length = 0;
+			for (Course course : courses) {
+				eventBuffer.setLength(0);
+				CalendarEntryGenerator.generateEvent(course, eventFolder);
+				// Ends the event as ICSWriter does, so that the next event is folded at the same points as in a saved calendar
+				eventFolder.endLine();
+				length += eventBuffer.length();
+			}
+			return length;
+		});
+		stages.put("write", () -> {
+			ICSWriter icsWriter = new ICSWriter(new DiscardingChannel());
+			icsWriter.writeCalendar(courses);
+			return icsWriter.getBytesWritten();
+		});
+		return stages;
+	}
+
+	/**
+	 * @param row The cells of a course
+	 * @return The course built from the cells
+	 */
+	private static Course buildCourse(String[] row) {
+		CourseBuilder courseBuilder = new CourseBuilder();
+		for (int column = 0; column < row.length; column++) {
+			XLSXReader.courseDataFactory(courseBuilder, column, row[column]);
+		}
+		return courseBuilder.toCourse();
+	}
+
+	/**
+	 * Runs the warmup iterations, then the measured iterations, and prints the averages of the measured iterations
+	 *
+	 * @param stageName        The name of the stage
+	 * @param size             The number of rows the stage works on
+	 * @param stage            The stage to measure
+	 * @param warmupIterations The number of iterations that are not measured
+	 * @param iterations       The number of measured iterations
+	 * @param iterationMillis  How long each iteration runs the stage for
+	 * @throws Exception Thrown if the stage fails
+	 */
+	private static void measure(String stageName, int size, Stage stage, int warmupIterations, int iterations, long iterationMillis) throws Exception {
+		for (int i = 0; i < warmupIterations; i++) {
+			StageBenchmark.runIteration(stage, iterationMillis);
+		}
+
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long operations = 0;
+		long elapsedNanos = 0;
+		long allocatedBytes = 0;
+		long gcCount = 0;
+		for (int i = 0; i < iterations; i++) {
+			long allocatedBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+			long gcCountBefore = StageBenchmark.getGcCount();
+			long startTime = System.nanoTime();
+			operations += StageBenchmark.runIteration(stage, iterationMillis);
+			elapsedNanos += System.nanoTime() - startTime;
+			allocatedBytes += threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+			gcCount += StageBenchmark.getGcCount() - gcCountBefore;
+		}
+
+		double seconds = elapsedNanos / 1e9;
+		System.out.printf("%-10s %8d %12.2f %14.0f %16.1f %10d%n", stageName, size, operations / seconds,
+				operations * (double) size / seconds, allocatedBytes / ((double) operations * size), gcCount);
+	}
+
+	/**
+	 * @param stage           The stage to run
+	 * @param iterationMillis How long to run the stage for
+	 * @return The number of times that the stage ran
+	 * @throws Exception Thrown if the stage fails
+	 */
+	private static long runIteration(Stage stage, long iterationMillis) throws Exception {
+		long endTime = System.nanoTime() + iterationMillis * 1_000_000;
+		long operations = 0;
+		long result = 0;
+		do {
+			result += stage.run();
+			operations++;
+		} while (System.nanoTime() < endTime);
+		sink = result;
+		return operations;
+	}
+
+	/**
+	 * @return The number of garbage collections so far, of every collector
+	 */
+	private static long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean garbageCollectorMXBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, garbageCollectorMXBean.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * A channel that drops everything written to it, so that writing is measured without the cost of a disk
+	 */
+	private static class DiscardingChannel implements WritableByteChannel {
+		@Override
+		public int write(ByteBuffer src) {
+			int remaining = src.remaining();
+			src.position(src.limit());
+			return remaining;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
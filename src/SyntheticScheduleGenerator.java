@@ -0,0 +1,158 @@
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates schedules in the same format as the WPI workbooks, so that the program can be measured without a real schedule.
+ * <br>The same number of rows and seed always generate the same schedule.
+ * <br>Usage: {@code SyntheticScheduleGenerator <output file> <number of rows> [seed]}
+ */
+public class SyntheticScheduleGenerator {
+	/**
+	 * The titles of the columns, in the order that {@link XLSXReader} reads them
+	 */
+	public static final String[] TITLES = {"Term", "Course", "Format", "Meetings", "Location", "Instructor", "Delivery"};
+
+	/**
+	 * The start and end of A, B, C, D, E1, and E2 terms that the generated terms fall in
+	 */
+	public static final int[] TERM_DATES = {
+			20230824, 20231013, 20231023, 20231215,
+			20240110, 20240301, 20240311, 20240501,
+			20240520, 20240628, 20240701, 20240809
+	};
+
+	private static final String[] TERMS = {
+			"2023 Fall A Term", "2023 Fall B Term", "2024 Spring C Term", "2024 Spring D Term",
+			"2024 Summer E1 Term", "2024 Summer E2 Term", "2023 Fall Semester", "2024 Spring Semester"
+	};
+	private static final String[] DEPARTMENTS = {"CS", "MA", "PH", "CH", "BB", "ECE", "ME", "HU", "WR", "IMGD"};
+	private static final String[] TITLE_WORDS = {"Introduction", "to", "Program", "Design", "Calculus", "Mechanics",
+			"Systems", "Analysis", "Theory", "Advanced", "Topics", "in", "Écriture", "Structures", "Data", "Algorithms"};
+	private static final String[] FORMATS = {"Lecture", "Lecture", "Laboratory", "Discussion"};
+	private static final String[] DAYS = {"M-T-R-F", "M-W-R", "T-F", "M-R", "W", "T", "R", "F", "M-T-W-R-F"};
+	private static final String[] BUILDINGS = {"Fuller Labs", "Salisbury Labs", "Olin Hall", "Atwater Kent", "Higgins Labs", "Kaven Hall"};
+	private static final String[] FIRST_NAMES = {"Jane", "John", "Zoë", "Wei", "Priya", "Mateo", "Aisha", "Liam"};
+	private static final String[] LAST_NAMES = {"Doe", "Smith", "Müller", "Chen", "Patel", "García", "Okafor", "Nguyen"};
+	private static final String[] DELIVERIES = {"In-Person", "In-Person", "Online", "Hybrid"};
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: SyntheticScheduleGenerator <output file> <number of rows> [seed]");
+			System.exit(2);
+		}
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+		SyntheticScheduleGenerator.writeWorkbook(new File(args[0]), Integer.parseInt(args[1]), seed);
+	}
+
+	/**
+	 * @param rowCount The number of courses to generate
+	 * @param seed     The seed of the random generator
+	 * @return The cells of each course, in the order of {@link SyntheticScheduleGenerator#TITLES}
+	 */
+	public static List<String[]> generateRows(int rowCount, long seed) {
+		Random random = new Random(seed);
+		List<String[]> rows = new ArrayList<>(rowCount);
+		for (int i = 0; i < rowCount; i++) {
+			rows.add(SyntheticScheduleGenerator.generateRow(random));
+		}
+		return rows;
+	}
+
+	/**
+	 * @param random The random generator to take the values from
+	 * @return The cells of a course, in the order of {@link SyntheticScheduleGenerator#TITLES}
+	 */
+	private static String[] generateRow(Random random) {
+		String format = pick(random, FORMATS);
+		String department = pick(random, DEPARTMENTS);
+		int number = 1000 + random.nextInt(4000);
+		String section = switch (format) {
+			case "Laboratory" -> "LX" + (1 + random.nextInt(9));
+			case "Discussion" -> "D0" + (1 + random.nextInt(9));
+			default -> "L0" + (1 + random.nextInt(3));
+		};
+		String title = pick(random, TITLE_WORDS) + " " + pick(random, TITLE_WORDS) + " " + pick(random, TITLE_WORDS);
+		String course = department + " " + number + "-" + section + " - " + title;
+
+		// Courses start on the hour between 8 AM and 4 PM and last 50 or 110 minutes
+		int startMinute = (8 + random.nextInt(9)) * 60;
+		int endMinute = startMinute + (random.nextBoolean() ? 50 : 110);
+		String meetings = pick(random, DAYS) + " | " + formatTime(startMinute) + " - " + formatTime(endMinute);
+
+		String location = pick(random, BUILDINGS) + " " + (100 + random.nextInt(300));
+		String instructor = pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES);
+		return new String[]{pick(random, TERMS), course, format, meetings, location, instructor, pick(random, DELIVERIES)};
+	}
+
+	/**
+	 * Writes a workbook with a title row followed by {@code rowCount} generated courses.
+	 * <br>Rows are streamed to the file, so workbooks of any size can be generated.
+	 *
+	 * @param file     The file to write the workbook to
+	 * @param rowCount The number of courses to generate
+	 * @param seed     The seed of the random generator
+	 * @throws IOException Thrown if the workbook could not be written
+	 */
+	public static void writeWorkbook(File file, int rowCount, long seed) throws IOException {
+		try (OutputStream outputStream = new FileOutputStream(file)) {
+			SyntheticScheduleGenerator.writeWorkbook(outputStream, rowCount, seed);
+		}
+	}
+
+	/**
+	 * @param outputStream Where to write the workbook. Is not closed
+	 * @param rowCount     The number of courses to generate
+	 * @param seed         The seed of the random generator
+	 * @throws IOException Thrown if the workbook could not be written
+	 * @see SyntheticScheduleGenerator#writeWorkbook(File, int, long)
+	 */
+	public static void writeWorkbook(OutputStream outputStream, int rowCount, long seed) throws IOException {
+		// Shared strings are used, the same as the exported schedules
+		SXSSFWorkbook workbook = new SXSSFWorkbook(null, 100, false, true);
+		try {
+			Sheet sheet = workbook.createSheet("Schedule");
+			SyntheticScheduleGenerator.writeRow(sheet.createRow(0), TITLES);
+			Random random = new Random(seed);
+			for (int i = 1; i <= rowCount; i++) {
+				SyntheticScheduleGenerator.writeRow(sheet.createRow(i), SyntheticScheduleGenerator.generateRow(random));
+			}
+			workbook.write(outputStream);
+		} finally {
+			// Delete the temporary files of the streamed rows
+			workbook.dispose();
+		}
+	}
+
+	/**
+	 * @param row   The row to write the cells to
+	 * @param cells The values of the cells
+	 */
+	private static void writeRow(Row row, String[] cells) {
+		for (int i = 0; i < cells.length; i++) {
+			row.createCell(i).setCellValue(cells[i]);
+		}
+	}
+
+	/**
+	 * @param minuteOfDay The time in minutes since midnight
+	 * @return The time in the format of the schedules, i.e. {@code 1:00 PM}
+	 */
+	private static String formatTime(int minuteOfDay) {
+		int hour = minuteOfDay / 60 % 12;
+		int minute = minuteOfDay % 60;
+		return (hour == 0 ? 12 : hour) + ":" + (minute < 10 ? "0" : "") + minute + (minuteOfDay < 12 * 60 ? " AM" : " PM");
+	}
+
+	private static String pick(Random random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+}
@@ -0,0 +1,67 @@
+import java.util.Objects;
+
+/**
+ * A term of a course, parsed from the term of a schedule, i.e. {@code 2023 Fall A Term} or {@code 2024 Spring Semester}
+ */
+public final class Term {
+	private final int year;
+	private final String season;
+	private final String subTerm;
+
+	/**
+	 * @param year    The year of the term, i.e. 2023
+	 * @param season  The season of the term, i.e. Fall or Spring
+	 * @param subTerm The term within the season, i.e. A or E1. Null if the course lasts the whole semester
+	 */
+	public Term(int year, String season, String subTerm) {
+		this.year = year;
+		this.season = season;
+		this.subTerm = subTerm;
+	}
+
+	public int getYear() {
+		return year;
+	}
+
+	public String getSeason() {
+		return season;
+	}
+
+	/**
+	 * @return The term within the season, i.e. A or E1. Null if the course lasts the whole semester
+	 */
+	public String getSubTerm() {
+		return subTerm;
+	}
+
+	/**
+	 * @return True if the course lasts the whole semester
+	 */
+	public boolean isSemester() {
+		return subTerm == null;
+	}
+
+	/**
+	 * @return The term as it is stored in {@link Course#getTerm()}: the sub term (i.e. A or E1) if there is one, otherwise the season (i.e. Fall)
+	 */
+	public String getKey() {
+		return subTerm != null ? subTerm : season;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof Term term)) return false;
+		return year == term.year && season.equals(term.season) && Objects.equals(subTerm, term.subTerm);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(year, season, subTerm);
+	}
+
+	@Override
+	public String toString() {
+		return year + " " + season + (subTerm != null ? " " + subTerm + " Term" : " Semester");
+	}
+}
@@ -0,0 +1,161 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * The start and end dates of every term, with the first meeting date of every set of weekdays computed in advance.
+ * <br>Dates are stored as epoch days, so moving between days never produces an invalid date, even across the end of a month.
+ * <br>Finding the {@code DTSTART} date of a course is a single array read. Immutable, so it can be shared between threads.
+ */
+public final class TermCalendar {
+	// The index of each span of a term, in the order of the dates given to the constructor, followed by the semesters
+	public static final int A_TERM = 0;
+	public static final int B_TERM = 1;
+	public static final int C_TERM = 2;
+	public static final int D_TERM = 3;
+	public static final int E1_TERM = 4;
+	public static final int E2_TERM = 5;
+	public static final int FALL_SEMESTER = 6;
+	public static final int SPRING_SEMESTER = 7;
+	public static final int SPAN_COUNT = 8;
+
+	/**
+	 * The number of dates given to the constructor: a start and an end for each of A, B, C, D, E1, and E2 terms
+	 */
+	public static final int TERM_DATE_COUNT = 12;
+
+	/**
+	 * The epoch day of the start and of the end of a span whose dates were not given
+	 */
+	private static final long UNDEFINED_EPOCH_DAY = Long.MIN_VALUE;
+
+	private final long[] startEpochDays = new long[SPAN_COUNT];
+	private final long[] endEpochDays = new long[SPAN_COUNT];
+
+	/**
+	 * The first meeting date in the format {@code YYYYMMDD}, at {@code span * DAY_MASK_COUNT + day mask}. -1 if there are no days in the mask
+	 */
+	private final int[] firstMeetingDates = new int[SPAN_COUNT * MeetingPattern.DAY_MASK_COUNT];
+
+	/**
+	 * @param terms The start and end of A, B, C, D, E1, and E2 terms in the format {@code YYYYMMDD}, as read by {@link TermDateGetter#getTerms()}.
+	 *              A term whose dates are 0 is left undefined
+	 */
+	public TermCalendar(int[] terms) {
+		if (terms.length != TERM_DATE_COUNT) {
+			throw new IllegalArgumentException("Expected " + TERM_DATE_COUNT + " term dates, but got " + terms.length);
+		}
+		for (int span = A_TERM; span <= E2_TERM; span++) {
+			this.setSpan(span, terms[span * 2], terms[span * 2 + 1]);
+		}
+		// Fall is A and B term, Spring is C and D term
+		this.setSpan(FALL_SEMESTER, terms[A_TERM * 2], terms[B_TERM * 2 + 1]);
+		this.setSpan(SPRING_SEMESTER, terms[C_TERM * 2], terms[D_TERM * 2 + 1]);
+	}
+
+	/**
+	 * @param span      The index of the span
+	 * @param startDate The first day of the span in the format {@code YYYYMMDD}
+	 * @param endDate   The last day of the span in the format {@code YYYYMMDD}
+	 */
+	private void setSpan(int span, int startDate, int endDate) {
+		if (startDate == 0 || endDate == 0) {
+			// The dates of the term were not given
+			this.startEpochDays[span] = UNDEFINED_EPOCH_DAY;
+			this.endEpochDays[span] = UNDEFINED_EPOCH_DAY;
+			Arrays.fill(this.firstMeetingDates, span * MeetingPattern.DAY_MASK_COUNT, (span + 1) * MeetingPattern.DAY_MASK_COUNT, -1);
+			return;
+		}
+		long startEpochDay = TermCalendar.toEpochDay(startDate);
+		long endEpochDay = TermCalendar.toEpochDay(endDate);
+		this.startEpochDays[span] = startEpochDay;
+		this.endEpochDays[span] = endEpochDay;
+
+		// The first date on or after the start of the term of each day of the week, indexed by the bit of the day in the mask
+		int[] firstDates = new int[7];
+		int startDayOfWeek = LocalDate.ofEpochDay(startEpochDay).getDayOfWeek().getValue() - 1; // Monday is 0
+		for (int shift = 0; shift < 7; shift++) {
+			firstDates[(startDayOfWeek + shift) % 7] = TermCalendar.toDate(startEpochDay + shift);
+		}
+
+		for (int mask = 0; mask < MeetingPattern.DAY_MASK_COUNT; mask++) {
+			// The first meeting is the first day of the course on or after the start of the term
+			int firstMeetingDate = -1;
+			for (int shift = 0; shift < 7 && firstMeetingDate == -1; shift++) {
+				int day = (startDayOfWeek + shift) % 7;
+				if (day < 5 && (mask & (1 << day)) != 0) {
+					firstMeetingDate = firstDates[day];
+				}
+			}
+			this.firstMeetingDates[span * MeetingPattern.DAY_MASK_COUNT + mask] = firstMeetingDate;
+		}
+	}
+
+	/**
+	 * @param term The term as it is stored in {@link Course#getTerm()}, i.e. A, E1, or Fall
+	 * @return The index of the span of the term, or -1 if there is no such term
+	 */
+	public static int getSpanIndex(String term) {
+		if (term == null) return -1;
+		return switch (term) {
+			case "A" -> A_TERM;
+			case "B" -> B_TERM;
+			case "C" -> C_TERM;
+			case "D" -> D_TERM;
+			case "E1" -> E1_TERM;
+			case "E2" -> E2_TERM;
+			case "Fall" -> FALL_SEMESTER;
+			case "Spring" -> SPRING_SEMESTER;
+			default -> -1;
+		};
+	}
+
+	/**
+	 * @param span The index of the span
+	 * @return True if the dates of the span were given
+	 */
+	public boolean isDefined(int span) {
+		return this.startEpochDays[span] != UNDEFINED_EPOCH_DAY;
+	}
+
+	/**
+	 * @param span The index of the span
+	 * @param days The bitmask of the days of the course, as in {@link MeetingPattern#getDays()}
+	 * @return The date of the first meeting in the format {@code YYYYMMDD}, or -1 if there are no days or the span is not defined
+	 */
+	public int getFirstMeetingDate(int span, int days) {
+		return this.firstMeetingDates[span * MeetingPattern.DAY_MASK_COUNT + days];
+	}
+
+	/**
+	 * @param span The index of the span
+	 * @return The first day of the span as an epoch day, if it is {@link TermCalendar#isDefined(int) defined}
+	 */
+	public long getStartEpochDay(int span) {
+		return this.startEpochDays[span];
+	}
+
+	/**
+	 * @param span The index of the span
+	 * @return The last day of the span as an epoch day, if it is {@link TermCalendar#isDefined(int) defined}
+	 */
+	public long getEndEpochDay(int span) {
+		return this.endEpochDays[span];
+	}
+
+	/**
+	 * @param date The date in the format {@code YYYYMMDD}
+	 * @return The date as an epoch day
+	 */
+	public static long toEpochDay(int date) {
+		return LocalDate.of(date / 10000, date / 100 % 100, date % 100).toEpochDay();
+	}
+
+	/**
+	 * @param epochDay The date as an epoch day
+	 * @return The date in the format {@code YYYYMMDD}
+	 */
+	public static int toDate(long epochDay) {
+		LocalDate localDate = LocalDate.ofEpochDay(epochDay);
+		return localDate.getYear() * 10000 + localDate.getMonthValue() * 100 + localDate.getDayOfMonth();
+	}
+}
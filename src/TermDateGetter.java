@@ -2,6 +2,9 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Scanner;
 
 public class TermDateGetter {
@@ -60,6 +63,40 @@ public class TermDateGetter {
 		return dates;
 	}
 
+	/**
+	 * Reads the dates saved by {@link TermDateGetter#getTerms()} without ever asking the user, so it can be used without a console.
+	 * <br>Unlike {@link TermDateGetter#getTerms()}, a faulty file is left as it is.
+	 *
+	 * @param file The file containing one date per line in the format {@code YYYYMMDD}
+	 * @return The start and end of the terms, with 0 for any date missing at the end of the file
+	 * @throws IOException Thrown if the file could not be read or does not contain at most 12 dates
+	 */
+	public static int[] readTerms(Path file) throws IOException {
+		int[] dates = new int[TermCalendar.TERM_DATE_COUNT];
+		List<String> lines = Files.readAllLines(file);
+		int i = 0;
+		for (String line : lines) {
+			if (line.isBlank()) continue;
+			if (i >= dates.length) {
+				throw new IOException("Too many dates in " + file);
+			}
+			try {
+				dates[i++] = Integer.parseInt(line.trim());
+			} catch (NumberFormatException e) {
+				throw new IOException("Faulty date in " + file + ": " + line);
+			}
+		}
+		return dates;
+	}
+
+	/**
+	 * @return The dates saved by {@link TermDateGetter#getTerms()}, read with {@link TermDateGetter#readTerms(Path)}
+	 * @throws IOException Thrown if the dates were never saved or could not be read
+	 */
+	public static int[] readTerms() throws IOException {
+		return TermDateGetter.readTerms(Path.of(TERM_DATES_FILE_NAME));
+	}
+
 	/**
 	 * Asks the user for dates by using {@link TermDateGetter#getNTermDatesFromUser(String)} and adding the data to {@code dates}
 	 *
@@ -175,11 +212,10 @@ public class TermDateGetter {
 
 			// Write the date to the file
 			FileWriter fileWriter = new FileWriter(TERM_DATES_FILE_NAME);
-			int i = 0;
+			// One date per line, so that every date can be read back
 			for (int date : dates) {
 				fileWriter.write(String.valueOf(date));
-				if (i < 7) fileWriter.write('\n');
-				i++;
+				fileWriter.write('\n');
 			}
 			fileWriter.close();
 			System.out.println("saved!");
@@ -0,0 +1,62 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the term column of a schedule into a {@link Term}.
+ * <br>A schedule only has a handful of different terms, so each of them is parsed once and then taken from a cache.
+ * <br>Thread safe, so that schedules being read at the same time can share the cache.
+ */
+public class TermParser {
+	/**
+	 * 4 digits, space, N word characters, space, 1 or 2 word characters (i.e. A or E1), space, "Term"
+	 * <br>i.e. 2023 Fall A Term
+	 */
+	private static final Pattern TERM_PATTERN = Pattern.compile("(\\d{4}) (\\w*) (\\w{1,2}) Term");
+
+	/**
+	 * 4 digits, space, N word characters, space, "Semester"
+	 * <br>i.e. 2024 Spring Semester
+	 */
+	private static final Pattern SEMESTER_PATTERN = Pattern.compile("(\\d{4}) (\\w*) Semester");
+
+	/**
+	 * The cache only has to hold the terms of a few years, so stop adding to it past this size in case of bad data
+	 */
+	private static final int MAX_CACHED_TERMS = 256;
+
+	private static final Map<String, Term> CACHE = new ConcurrentHashMap<>(16);
+
+	/**
+	 * @param uncleanedTerm The term in the format {@code YYYY Season TERM Term} or {@code YYYY Season Semester}
+	 * @return The parsed term, or null if it is in neither format
+	 */
+	public static Term parse(String uncleanedTerm) {
+		if (uncleanedTerm == null) return null;
+		Term term = CACHE.get(uncleanedTerm);
+		if (term == null) {
+			term = TermParser.parseUncached(uncleanedTerm);
+			if (term != null && CACHE.size() < MAX_CACHED_TERMS) {
+				CACHE.putIfAbsent(uncleanedTerm, term);
+			}
+		}
+		return term;
+	}
+
+	/**
+	 * @param uncleanedTerm The term in the format {@code YYYY Season TERM Term} or {@code YYYY Season Semester}
+	 * @return The parsed term, or null if it is in neither format
+	 */
+	private static Term parseUncached(String uncleanedTerm) {
+		Matcher matcher = TERM_PATTERN.matcher(uncleanedTerm);
+		if (matcher.matches()) {
+			return new Term(Integer.parseInt(matcher.group(1)), matcher.group(2), matcher.group(3));
+		}
+		matcher = SEMESTER_PATTERN.matcher(uncleanedTerm);
+		if (matcher.matches()) {
+			return new Term(Integer.parseInt(matcher.group(1)), matcher.group(2), null);
+		}
+		return null;
+	}
+}
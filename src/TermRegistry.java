@@ -0,0 +1,300 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The term dates of several academic years, so that schedules of different years can be converted by the same program.
+ * <br>An academic year starts with Fall, so 2023 Fall, 2024 Spring, and 2024 Summer are all in the academic year 2023.
+ * <br>The registry is saved in a compact binary file:
+ * <pre>
+ * int magic ("TRG1")
+ * int number of academic years
+ * int academic year, for every academic year in ascending order (the index)
+ * int[12] start and end of A, B, C, D, E1, and E2 terms in the format YYYYMMDD, for every academic year in the order of the index
+ * </pre>
+ * An academic year is found with a binary search of the index, and its {@link TermCalendar} is only computed the first time that it is needed.
+ * <br>Immutable apart from the calendars computed on demand, so a registry can be shared between threads as a consistent snapshot.
+ */
+public final class TermRegistry {
+	private static final int MAGIC = 0x54524731;
+	private static final int HEADER_BYTES = 2 * Integer.BYTES;
+	private static final int RECORD_BYTES = TermCalendar.TERM_DATE_COUNT * Integer.BYTES;
+
+	/**
+	 * The academic years in ascending order
+	 */
+	private final int[] academicYears;
+	/**
+	 * The dates of every academic year in the order of {@link TermRegistry#academicYears}, read only
+	 */
+	private final ByteBuffer records;
+	private final AtomicReferenceArray<TermCalendar> calendars;
+	/**
+	 * The dates used for a course whose academic year is not in the registry, or null if there are none
+	 */
+	private final int[] defaultDates;
+	private final TermCalendar defaultCalendar;
+
+	/**
+	 * @param academicYears The academic years in ascending order
+	 * @param records       The dates of every academic year in the same order
+	 * @param defaultDates  The dates used for any other academic year, or null
+	 */
+	private TermRegistry(int[] academicYears, ByteBuffer records, int[] defaultDates) {
+		this.academicYears = academicYears;
+		this.records = records.asReadOnlyBuffer();
+		this.calendars = new AtomicReferenceArray<>(academicYears.length);
+		this.defaultDates = defaultDates;
+		this.defaultCalendar = defaultDates != null ? new TermCalendar(defaultDates) : null;
+	}
+
+	/**
+	 * @param terms The dates of the terms as read by {@link TermDateGetter#getTerms()}
+	 * @return A registry that uses the same dates for every academic year, the same as before there were several
+	 */
+	public static TermRegistry of(int[] terms) {
+		return new TermRegistry(new int[0], ByteBuffer.allocate(0), terms.clone());
+	}
+
+	/**
+	 * @param datesByAcademicYear The dates of the terms of each academic year
+	 * @return A registry of the academic years, without any dates for other academic years
+	 */
+	public static TermRegistry of(Map<Integer, int[]> datesByAcademicYear) {
+		ByteBuffer bytes = ByteBuffer.wrap(TermRegistry.toBytes(datesByAcademicYear));
+		return TermRegistry.read(bytes);
+	}
+
+	/**
+	 * @param file The file of the registry
+	 * @return The registry read from the file
+	 * @throws IOException Thrown if the file could not be read or is not a registry
+	 */
+	public static TermRegistry read(Path file) throws IOException {
+		try {
+			return TermRegistry.read(ByteBuffer.wrap(Files.readAllBytes(file)));
+		} catch (IllegalArgumentException e) {
+			throw new IOException(file + " is not a term registry: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @param bytes The bytes of a registry
+	 * @return The registry
+	 * @throws IllegalArgumentException Thrown if the bytes are not a registry
+	 */
+	private static TermRegistry read(ByteBuffer bytes) {
+		if (bytes.remaining() < HEADER_BYTES || bytes.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException("Missing header");
+		}
+		int yearCount = bytes.getInt(Integer.BYTES);
+		long expectedBytes = HEADER_BYTES + (long) yearCount * (Integer.BYTES + RECORD_BYTES);
+		if (yearCount < 0 || bytes.remaining() != expectedBytes) {
+			throw new IllegalArgumentException("Expected " + expectedBytes + " bytes for " + yearCount + " academic years, but got " + bytes.remaining());
+		}
+		int[] academicYears = new int[yearCount];
+		for (int i = 0; i < yearCount; i++) {
+			academicYears[i] = bytes.getInt(HEADER_BYTES + i * Integer.BYTES);
+			if (i > 0 && academicYears[i] <= academicYears[i - 1]) {
+				throw new IllegalArgumentException("The academic years are not in ascending order");
+			}
+		}
+		ByteBuffer records = bytes.duplicate().position(HEADER_BYTES + yearCount * Integer.BYTES).slice();
+		return new TermRegistry(academicYears, records, null);
+	}
+
+	/**
+	 * Saves the registry in {@code file}, replacing it at once so that a {@link TermRegistryWatcher} never reads a partly written registry
+	 *
+	 * @param file                The file to save the registry in
+	 * @param datesByAcademicYear The dates of the terms of each academic year
+	 * @throws IOException Thrown if the registry could not be saved
+	 */
+	public static void write(Path file, Map<Integer, int[]> datesByAcademicYear) throws IOException {
+		Path absoluteFile = file.toAbsolutePath();
+		// Saved the same way as a calendar, so the registry keeps its permissions and is never seen partly written
+		Path temporaryFile = ICSWriter.createTemporaryFile(absoluteFile);
+		try {
+			Files.write(temporaryFile, TermRegistry.toBytes(datesByAcademicYear));
+			ICSWriter.replaceFile(temporaryFile, absoluteFile);
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	/**
+	 * @param datesByAcademicYear The dates of the terms of each academic year
+	 * @return The registry in its file format
+	 */
+	private static byte[] toBytes(Map<Integer, int[]> datesByAcademicYear) {
+		TreeMap<Integer, int[]> sortedDates = new TreeMap<>(datesByAcademicYear);
+		ByteBuffer bytes = ByteBuffer.allocate(HEADER_BYTES + sortedDates.size() * (Integer.BYTES + RECORD_BYTES));
+		bytes.putInt(MAGIC).putInt(sortedDates.size());
+		for (int academicYear : sortedDates.keySet()) {
+			bytes.putInt(academicYear);
+		}
+		for (int[] dates : sortedDates.values()) {
+			if (dates.length != TermCalendar.TERM_DATE_COUNT) {
+				throw new IllegalArgumentException("Expected " + TermCalendar.TERM_DATE_COUNT + " term dates, but got " + dates.length);
+			}
+			for (int date : dates) {
+				bytes.putInt(date);
+			}
+		}
+		return bytes.array();
+	}
+
+	/**
+	 * @param term The term of a course
+	 * @return The academic year of the term: its year for Fall, otherwise the year before
+	 */
+	public static int getAcademicYear(Term term) {
+		return term.getSeason().equals("Fall") ? term.getYear() : term.getYear() - 1;
+	}
+
+	/**
+	 * @param term The term of a course, or null if it is not known
+	 * @return The calendar of the academic year of the term, the default calendar if the academic year is not in the registry or the term is not known,
+	 * or null if there is neither
+	 */
+	public TermCalendar getCalendar(Term term) {
+		return term != null ? this.getCalendar(TermRegistry.getAcademicYear(term)) : this.defaultCalendar;
+	}
+
+	/**
+	 * @param academicYear The academic year, i.e. 2023 for 2023 Fall to 2024 Summer
+	 * @return The calendar of the academic year, the default calendar if the academic year is not in the registry, or null if there is neither
+	 */
+	public TermCalendar getCalendar(int academicYear) {
+		int index = Arrays.binarySearch(this.academicYears, academicYear);
+		if (index < 0) {
+			return this.defaultCalendar;
+		}
+		TermCalendar termCalendar = this.calendars.get(index);
+		if (termCalendar == null) {
+			// Two threads may compute the same calendar at once, but only one is kept
+			this.calendars.compareAndSet(index, null, new TermCalendar(this.readDates(index)));
+			termCalendar = this.calendars.get(index);
+		}
+		return termCalendar;
+	}
+
+	/**
+	 * @param academicYear The academic year
+	 * @return The dates of the terms of the academic year, or null if it is not in the registry
+	 */
+	public int[] getDates(int academicYear) {
+		int index = Arrays.binarySearch(this.academicYears, academicYear);
+		return index >= 0 ? this.readDates(index) : null;
+	}
+
+	/**
+	 * @param index The index of the academic year
+	 * @return The dates of the terms of the academic year
+	 */
+	private int[] readDates(int index) {
+		int[] dates = new int[TermCalendar.TERM_DATE_COUNT];
+		for (int i = 0; i < dates.length; i++) {
+			dates[i] = this.records.getInt(index * RECORD_BYTES + i * Integer.BYTES);
+		}
+		return dates;
+	}
+
+	/**
+	 * @return The dates of the terms of every academic year in the registry, by academic year in ascending order
+	 */
+	public Map<Integer, int[]> getDatesByAcademicYear() {
+		Map<Integer, int[]> datesByAcademicYear = new TreeMap<>();
+		for (int i = 0; i < this.academicYears.length; i++) {
+			datesByAcademicYear.put(this.academicYears[i], this.readDates(i));
+		}
+		return datesByAcademicYear;
+	}
+
+	/**
+	 * @return The year of the earliest date in the registry, or -1 if it has no dates
+	 */
+	public int getFirstYear() {
+		return this.findYear(true);
+	}
+
+	/**
+	 * @return The year of the latest date in the registry, i.e. the end of the last Summer term, or -1 if it has no dates
+	 */
+	public int getLastYear() {
+		return this.findYear(false);
+	}
+
+	/**
+	 * @param first True to find the earliest year, false to find the latest
+	 * @return The earliest or latest year of any date of the academic years and the default dates, or -1 if there are none
+	 */
+	private int findYear(boolean first) {
+		int foundYear = -1;
+		for (int i = 0; i <= this.academicYears.length; i++) {
+			int[] dates = i < this.academicYears.length ? this.readDates(i) : this.defaultDates;
+			if (dates == null) {
+				continue;
+			}
+			for (int date : dates) {
+				int year = date / 10000;
+				if (date > 0 && (foundYear == -1 || (first ? year < foundYear : year > foundYear))) {
+					foundYear = year;
+				}
+			}
+		}
+		return foundYear;
+	}
+
+	/**
+	 * @return Every academic year followed by its dates, then the default dates if there are any.
+	 * Two registries with the same array give every course the same dates, so it can be used as part of a {@link ConversionCache} key
+	 */
+	public int[] toArray() {
+		int[] array = new int[this.academicYears.length * (1 + TermCalendar.TERM_DATE_COUNT) + (this.defaultDates != null ? TermCalendar.TERM_DATE_COUNT : 0)];
+		int position = 0;
+		for (int i = 0; i < this.academicYears.length; i++) {
+			array[position++] = this.academicYears[i];
+			int[] dates = this.readDates(i);
+			System.arraycopy(dates, 0, array, position, dates.length);
+			position += dates.length;
+		}
+		if (this.defaultDates != null) {
+			System.arraycopy(this.defaultDates, 0, array, position, this.defaultDates.length);
+		}
+		return array;
+	}
+
+	/**
+	 * Prints a registry, or adds the dates saved by {@link TermDateGetter#getTerms()} to it as an academic year.
+	 * <br>Usage: {@code TermRegistry <registry file> [<academic year> <term dates file>]}
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1 && args.length != 3) {
+			System.err.println("Usage: TermRegistry <registry file> [<academic year> <term dates file>]");
+			System.exit(2);
+		}
+		Path file = Path.of(args[0]);
+		Map<Integer, int[]> datesByAcademicYear = Files.exists(file) ? TermRegistry.read(file).getDatesByAcademicYear() : new TreeMap<>();
+		if (args.length == 3) {
+			datesByAcademicYear.put(Integer.parseInt(args[1]), TermDateGetter.readTerms(Path.of(args[2])));
+			TermRegistry.write(file, datesByAcademicYear);
+		}
+		for (Map.Entry<Integer, int[]> entry : datesByAcademicYear.entrySet()) {
+			System.out.println(entry.getKey() + ": " + Arrays.toString(entry.getValue()));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TermRegistry{" +
+				"academicYears=" + Arrays.toString(academicYears) +
+				", defaultDates=" + Arrays.toString(defaultDates) +
+				'}';
+	}
+}
@@ -0,0 +1,115 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the latest {@link TermRegistry} of a file, reading it again whenever the file changes.
+ * <br>The registry is swapped in at once, so a conversion that took the previous registry keeps using it until it is done,
+ * and nothing ever waits for the file or for the user. A registry that cannot be read is reported and the previous registry is kept.
+ */
+public class TermRegistryWatcher implements Closeable {
+	private final Path file;
+	private final AtomicReference<TermRegistry> termRegistry;
+	private final Consumer<TermRegistry> reloadListener;
+	private final WatchService watchService;
+	private final AtomicLong reloadCount = new AtomicLong();
+
+	/**
+	 * Reads the registry and starts watching its file
+	 *
+	 * @param file           The file of the registry
+	 * @param reloadListener Receives the registry every time that it is read, starting with the first time, or null
+	 * @throws IOException Thrown if the registry could not be read the first time, or its directory cannot be watched
+	 */
+	public TermRegistryWatcher(Path file, Consumer<TermRegistry> reloadListener) throws IOException {
+		this.file = file.toAbsolutePath();
+		this.reloadListener = reloadListener;
+		this.termRegistry = new AtomicReference<>(TermRegistry.read(this.file));
+		if (reloadListener != null) {
+			reloadListener.accept(this.termRegistry.get());
+		}
+
+		// A registry is saved by moving a new file over it, so the directory is watched instead of the file
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.file.getParent().register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		Thread watchThread = new Thread(this::watch, "term-registry-watcher");
+		watchThread.setDaemon(true);
+		watchThread.start();
+	}
+
+	/**
+	 * @return The latest registry. Take it once per conversion, so that the whole conversion uses the same dates
+	 */
+	public TermRegistry get() {
+		return this.termRegistry.get();
+	}
+
+	/**
+	 * @return The number of times that the registry was read again since it was first read
+	 */
+	public long getReloadCount() {
+		return this.reloadCount.get();
+	}
+
+	/**
+	 * Reads the registry again every time that its file changes, until the watcher is closed
+	 */
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey watchKey = this.watchService.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : watchKey.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW || this.file.getFileName().equals(event.context())) {
+						changed = true;
+					}
+				}
+				if (changed) {
+					this.reload();
+				}
+				if (!watchKey.reset()) {
+					System.err.println("Stopped watching " + this.file + ", since its directory can no longer be watched.");
+					return;
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// The watcher was closed
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Reads the registry and swaps it in, keeping the previous registry if it cannot be read
+	 */
+	private void reload() {
+		try {
+			TermRegistry newTermRegistry = TermRegistry.read(this.file);
+			this.termRegistry.set(newTermRegistry);
+			this.reloadCount.incrementAndGet();
+			if (this.reloadListener != null) {
+				this.reloadListener.accept(newTermRegistry);
+			}
+			System.out.println("Reloaded the term dates from " + this.file + ".");
+		} catch (IOException e) {
+			System.err.println("Could not reload the term dates, so the previous dates are kept: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Stops watching the file. The latest registry can still be taken
+	 */
+	@Override
+	public void close() throws IOException {
+		this.watchService.close();
+	}
+}
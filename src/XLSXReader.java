@@ -1,27 +1,58 @@
 import com.aspose.cells.LoadOptions;
+import com.aspose.cells.SaveFormat;
 import com.aspose.cells.Workbook;
+import org.apache.poi.POIXMLException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class XLSXReader {
-	private final static String FIXED_FILE_NAME = "fixed_xlsx.xlsx";
+	private final static AtomicLong OPEN_COUNT = new AtomicLong();
+	private final static AtomicLong REPAIR_COUNT = new AtomicLong();
+	private static volatile Semaphore repairPermits;
 
 	/**
 	 * @param jFileChooser The file chooser to get the file from
 	 * @return The file that the user selects
 	 */
 	public static File getInputFile(JFileChooser jFileChooser) {
-		FileNameExtensionFilter filter = new FileNameExtensionFilter("XLSX", "xlsx");
+		FileNameExtensionFilter filter = new FileNameExtensionFilter("Schedules (XLSX, CSV)", "xlsx", "csv");
 		jFileChooser.setFileFilter(filter);
 
 		// Get the input file
@@ -33,28 +64,269 @@ public class XLSXReader {
 	}
 
 	/**
-	 * @param corruptFile The corrupt file
+	 * Opens the workbook with POI, only repairing it with aspose-cells if POI cannot read it as is.
+	 * <br>The repaired workbook is kept in memory, so no file is written to the working directory.
+	 *
+	 * @param file The workbook to open
+	 * @return The opened workbook. Must be {@link OPCPackage#revert() reverted} once it is no longer needed
+	 * @throws Exception Thrown if the workbook could not be opened even after repairing it
+	 */
+	private static OPCPackage openWorkbookPackage(File file) throws Exception {
+		XLSXReader.OPEN_COUNT.incrementAndGet();
+		// Try the cheap way first: most files can be read by POI directly
+		OPCPackage opcPackage = XLSXReader.tryOpenWorkbookPackage(file);
+		if (opcPackage != null) {
+			return opcPackage;
+		}
+
+		// POI could not read it, so it is corrupt. Fix it
+		return OPCPackage.open(new ByteArrayInputStream(XLSXReader.repairWorkbook(file)));
+	}
+
+	/**
+	 * @param file The workbook to open
+	 * @return The opened workbook, or null if POI cannot read it as is. Must be {@link OPCPackage#revert() reverted} once it is no longer needed
+	 */
+	private static OPCPackage tryOpenWorkbookPackage(File file) {
+		OPCPackage opcPackage = null;
+		try {
+			opcPackage = OPCPackage.open(file, PackageAccess.READ);
+			XLSXReader.checkWorkbookPackage(opcPackage);
+			return opcPackage;
+		} catch (Exception e) {
+			if (opcPackage != null) {
+				opcPackage.revert();
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * @param bytes The workbook to open
+	 * @return The opened workbook, or null if POI cannot read it as is. Must be {@link OPCPackage#revert() reverted} once it is no longer needed
+	 */
+	private static OPCPackage tryOpenWorkbookPackage(byte[] bytes) {
+		OPCPackage opcPackage = null;
+		try {
+			opcPackage = OPCPackage.open(new ByteArrayInputStream(bytes));
+			XLSXReader.checkWorkbookPackage(opcPackage);
+			return opcPackage;
+		} catch (Exception e) {
+			if (opcPackage != null) {
+				opcPackage.revert();
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Reads an opened workbook
+	 *
+	 * @param <T> The result of reading the workbook
+	 */
+	@FunctionalInterface
+	private interface WorkbookParser<T> {
+		/**
+		 * @param opcPackage The opened workbook
+		 * @return The result of reading the workbook
+		 * @throws Exception Thrown if the workbook could not be parsed
+		 */
+		T parse(OPCPackage opcPackage) throws Exception;
+	}
+
+	/**
+	 * Opens the workbook with POI and parses it, repairing it with aspose-cells if POI cannot open it, or if it opens but one of its parts is malformed.
+	 * <br>A workbook is repaired at most once, and the repaired workbook is parsed again from the start. Any other failure of the parser is thrown as is.
+	 *
+	 * @param file   The workbook to read
+	 * @param parser Reads the opened workbook. Called a second time with the repaired workbook if the first call finds it malformed
+	 * @param <T>    The result of reading the workbook
+	 * @return The result of the parser
+	 * @throws Exception Thrown if the workbook could not be opened or parsed even after repairing it, with the failure of the first parse suppressed
+	 */
+	private static <T> T parseWorkbook(File file, WorkbookParser<T> parser) throws Exception {
+		XLSXReader.OPEN_COUNT.incrementAndGet();
+		OPCPackage opcPackage = XLSXReader.tryOpenWorkbookPackage(file);
+		Exception parseFailure = null;
+		if (opcPackage != null) {
+			try {
+				return parser.parse(opcPackage);
+			} catch (Exception e) {
+				if (!XLSXReader.isMalformedWorkbook(e)) {
+					throw e;
+				}
+				// The package opens, but the XML of a part is malformed, which a repair fixes the same as a package that does not open
+				parseFailure = e;
+			} finally {
+				// The package is read only, so revert instead of close to avoid saving it
+				opcPackage.revert();
+			}
+		}
+		try {
+			return XLSXReader.parseRepairedWorkbook(XLSXReader.repairWorkbook(file), parser);
+		} catch (Exception e) {
+			if (parseFailure != null) {
+				e.addSuppressed(parseFailure);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Same as {@link XLSXReader#parseWorkbook(File, WorkbookParser)}, for a workbook that is already in memory
+	 *
+	 * @param bytes  The workbook to read
+	 * @param parser Reads the opened workbook. Called a second time with the repaired workbook if the first call finds it malformed
+	 * @param <T>    The result of reading the workbook
+	 * @return The result of the parser
+	 * @throws Exception Thrown if the workbook could not be opened or parsed even after repairing it, with the failure of the first parse suppressed
+	 */
+	private static <T> T parseWorkbook(byte[] bytes, WorkbookParser<T> parser) throws Exception {
+		XLSXReader.OPEN_COUNT.incrementAndGet();
+		OPCPackage opcPackage = XLSXReader.tryOpenWorkbookPackage(bytes);
+		Exception parseFailure = null;
+		if (opcPackage != null) {
+			try {
+				return parser.parse(opcPackage);
+			} catch (Exception e) {
+				if (!XLSXReader.isMalformedWorkbook(e)) {
+					throw e;
+				}
+				parseFailure = e;
+			} finally {
+				opcPackage.revert();
+			}
+		}
+		try {
+			return XLSXReader.parseRepairedWorkbook(XLSXReader.repairWorkbook(new ByteArrayInputStream(bytes)), parser);
+		} catch (Exception e) {
+			if (parseFailure != null) {
+				e.addSuppressed(parseFailure);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @param e The failure of parsing a workbook that POI could open
+	 * @return True if the package or the XML of one of its parts is malformed, which a repair can fix.
+	 * False for any other failure, such as an error in the data of a row or in the consumer of the courses, which a repair would not fix
+	 */
+	private static boolean isMalformedWorkbook(Exception e) {
+		return e instanceof POIXMLException || e instanceof OpenXML4JException || e instanceof SAXException || e instanceof IOException;
+	}
+
+	/**
+	 * @param repairedBytes The workbook repaired by aspose-cells
+	 * @param parser        Reads the opened workbook
+	 * @param <T>           The result of reading the workbook
+	 * @return The result of the parser
+	 * @throws Exception Thrown if the repaired workbook could not be opened or parsed
+	 */
+	private static <T> T parseRepairedWorkbook(byte[] repairedBytes, WorkbookParser<T> parser) throws Exception {
+		OPCPackage opcPackage = OPCPackage.open(new ByteArrayInputStream(repairedBytes));
+		try {
+			return parser.parse(opcPackage);
+		} finally {
+			opcPackage.revert();
+		}
+	}
+
+	/**
+	 * @param file The corrupt workbook
+	 * @return The bytes of the fixed workbook in the XLSX format, from {@link XLSXReader#repairWorkbook(InputStream)}
+	 * @throws Exception Thrown if there is an error
+	 */
+	private static byte[] repairWorkbook(File file) throws Exception {
+		try (FileInputStream fileInputStream = new FileInputStream(file)) {
+			return XLSXReader.repairWorkbook(fileInputStream);
+		}
+	}
+
+	/**
+	 * Repairs the workbook with aspose-cells, waiting first if {@link XLSXReader#setMaxConcurrentRepairs(int)} repairs are already running
+	 *
+	 * @param corruptInputStream The corrupt workbook
+	 * @return The bytes of the fixed workbook in the XLSX format
+	 * @throws Exception Thrown if there is an error
+	 */
+	private static byte[] repairWorkbook(InputStream corruptInputStream) throws Exception {
+		XLSXReader.REPAIR_COUNT.incrementAndGet();
+		Semaphore permits = XLSXReader.repairPermits;
+		if (permits == null) {
+			return XLSXReader.measureRepair(corruptInputStream);
+		}
+		permits.acquire();
+		try {
+			return XLSXReader.measureRepair(corruptInputStream);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * @param corruptInputStream The corrupt workbook
+	 * @return The bytes of the fixed workbook, from {@link XLSXReader#fixCorruptXLSXFile(InputStream)}
+	 * @throws Exception Thrown if there is an error
+	 */
+	private static byte[] measureRepair(InputStream corruptInputStream) throws Exception {
+		long startNanos = ConversionMetrics.startStage();
+		byte[] fixedBytes = XLSXReader.fixCorruptXLSXFile(corruptInputStream);
+		ConversionMetrics.endStage(ConversionStage.REPAIR, startNanos, 1);
+		return fixedBytes;
+	}
+
+	/**
+	 * Limits the number of workbooks repaired at once, since a repair loads the whole workbook into memory.
+	 * <br>Repairs past the limit wait for a running repair to finish.
+	 *
+	 * @param maxConcurrentRepairs The maximum number of repairs at once, or 0 for no limit
+	 */
+	public static void setMaxConcurrentRepairs(int maxConcurrentRepairs) {
+		XLSXReader.repairPermits = maxConcurrentRepairs > 0 ? new Semaphore(maxConcurrentRepairs) : null;
+	}
+
+	/**
+	 * Makes sure that the parts needed to read the courses can be found in the workbook
+	 *
+	 * @param opcPackage The workbook to check
+	 * @throws Exception Thrown if POI cannot find the workbook or its first sheet
+	 */
+	private static void checkWorkbookPackage(OPCPackage opcPackage) throws Exception {
+		XSSFReader xssfReader = new XSSFReader(opcPackage);
+		Iterator<InputStream> sheets = xssfReader.getSheetsData();
+		if (!sheets.hasNext()) {
+			throw new IllegalStateException("The workbook does not have any sheets");
+		}
+		sheets.next().close();
+	}
+
+	/**
+	 * @param corruptInputStream The corrupt workbook
+	 * @return The bytes of the fixed workbook in the XLSX format
 	 * @throws Exception Thrown if there is an error
 	 * @apiNote Uses aspose-cells. Required to throw Exception because of said API. Locate said API here: <a href="https://releases.aspose.com/cells/java/">Aspose Cells</a>
 	 */
-	private static void fixCorruptXLSXFile(File corruptFile) throws Exception {
-		// Since the main file that this entire project is for is corrupt, assume that the xlsx is corrupt and fix it
-		// Store the output in FIXED_FILE_NAME
-		FileInputStream fileInputStream = new FileInputStream(corruptFile);
+	static byte[] fixCorruptXLSXFile(InputStream corruptInputStream) throws Exception {
 		LoadOptions options = new LoadOptions();
-		com.aspose.cells.Workbook workbookFixer = new Workbook(fileInputStream, options);
-		workbookFixer.save(XLSXReader.FIXED_FILE_NAME);
+		com.aspose.cells.Workbook workbookFixer = new Workbook(corruptInputStream, options);
+		ByteArrayOutputStream fixedOutputStream = new ByteArrayOutputStream();
+		workbookFixer.save(fixedOutputStream, SaveFormat.XLSX);
+		return fixedOutputStream.toByteArray();
 	}
 
 	/**
-	 * Deletes the file named in {@link XLSXReader#FIXED_FILE_NAME}
+	 * @return The number of workbooks that have been opened
 	 */
-	private static void deleteFixedXLSXFile() {
-		// Delete the fixed file
-		File fixedFile = new File(XLSXReader.FIXED_FILE_NAME);
-		if (!fixedFile.delete()) {
-			throw new RuntimeException("Error deleting the fixed XLSX file. Please try deleting it manually and try again.");
-		}
+	public static long getOpenCount() {
+		return XLSXReader.OPEN_COUNT.get();
+	}
+
+	/**
+	 * @return The number of opened workbooks that needed to be repaired with aspose-cells before POI could read them
+	 */
+	public static long getRepairCount() {
+		return XLSXReader.REPAIR_COUNT.get();
 	}
 
 	/**
@@ -65,18 +337,20 @@ public class XLSXReader {
 	 */
 	public static List<Course> readXLSXFile(File file) {
 		List<Course> courses = new ArrayList<>();
-		// Assume that file is corrupt, and fix it
+		OPCPackage opcPackage;
 		try {
-			XLSXReader.fixCorruptXLSXFile(file);
+			opcPackage = XLSXReader.openWorkbookPackage(file);
 		} catch (Exception e) {
+			ConversionMetrics.recordError(e);
 			System.err.println("An error occurred when fixing the corrupted XLSX file.");
 			e.printStackTrace();
+			return courses;
 		}
 
+		long parseStartNanos = ConversionMetrics.startStage();
 		try {
 			// Read the file
-			FileInputStream fixedFileInputStream = new FileInputStream(XLSXReader.FIXED_FILE_NAME);
-			XSSFWorkbook workbook = new XSSFWorkbook(fixedFileInputStream);
+			XSSFWorkbook workbook = new XSSFWorkbook(opcPackage);
 			XSSFSheet sheet = workbook.getSheetAt(0);
 
 			boolean firstRowFlag = true;
@@ -97,17 +371,280 @@ public class XLSXReader {
 					XLSXReader.courseDataFactory(courseBuilder, i, cellValue);
 				}
 				// Add the courses to an ArrayList
+				long buildStartNanos = ConversionMetrics.startStage();
 				courses.add(courseBuilder.toCourse());
+				ConversionMetrics.endStage(ConversionStage.BUILD, buildStartNanos, 1);
 			}
-
-			XLSXReader.deleteFixedXLSXFile();
+			ConversionMetrics.endStage(ConversionStage.PARSE, parseStartNanos, courses.size());
 		} catch (Exception e) {
+			ConversionMetrics.recordError(e);
 			e.printStackTrace();
+		} finally {
+			// The package is read only, so revert instead of close to avoid saving it
+			opcPackage.revert();
 		}
 
 		return courses;
 	}
 
+	/**
+	 * Stores each class in a {@link Course} by streaming the first sheet instead of loading the whole workbook.
+	 * <br>Produces the same courses as {@link XLSXReader#readXLSXFile(File)}, but memory use does not grow with the size of the file.
+	 *
+	 * @param file The file to read
+	 * @return The courses in the order that they appear in the sheet
+	 */
+	public static List<Course> readXLSXFileStreaming(File file) {
+		List<Course> courses = new ArrayList<>();
+		XLSXReader.streamXLSXFile(file, courses::add);
+		return courses;
+	}
+
+	/**
+	 * Reads the first sheet of the file with POI's event model, handing each course to {@code consumer} as soon as its row is read.
+	 * <br>Only one row is held in memory at a time.
+	 *
+	 * @param file     The file to read
+	 * @param consumer Receives each course in the order that they appear in the sheet
+	 * @apiNote Uses the POI event API ({@link XSSFReader} and {@link XSSFSheetXMLHandler}) from poi-ooxml-3.17
+	 */
+	public static void streamXLSXFile(File file, Consumer<Course> consumer) {
+		try {
+			XLSXReader.parseXLSXFile(file, consumer);
+		} catch (Exception e) {
+			ConversionMetrics.recordError(e);
+			System.err.println("An error occurred when reading the XLSX file.");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Same as {@link XLSXReader#streamXLSXFile(File, Consumer)}, except that errors are thrown to the caller instead of printed
+	 *
+	 * @param file     The file to read
+	 * @param consumer Receives each course in the order that they appear in the sheet
+	 * @return The number of courses that were read
+	 * @throws Exception Thrown if the file could not be opened, repaired, or parsed
+	 */
+	public static int parseXLSXFile(File file, Consumer<Course> consumer) throws Exception {
+		CourseSheetHandler courseSheetHandler = new CourseSheetHandler(consumer);
+		return XLSXReader.parseWorkbook(file, opcPackage -> XLSXReader.streamFirstSheet(opcPackage, courseSheetHandler));
+	}
+
+	/**
+	 * Same as {@link XLSXReader#parseXLSXFile(File, Consumer)}, for a workbook that is already in memory, i.e. an upload
+	 *
+	 * @param bytes    The workbook to read
+	 * @param consumer Receives each course in the order that they appear in the sheet
+	 * @return The number of courses that were read
+	 * @throws Exception Thrown if the workbook could not be opened, repaired, or parsed
+	 */
+	public static int parseXLSXBytes(byte[] bytes, Consumer<Course> consumer) throws Exception {
+		CourseSheetHandler courseSheetHandler = new CourseSheetHandler(consumer);
+		return XLSXReader.parseWorkbook(bytes, opcPackage -> XLSXReader.streamFirstSheet(opcPackage, courseSheetHandler));
+	}
+
+	/**
+	 * Same as {@link XLSXReader#parseXLSXFile(File, Consumer)}, except that each row is added to {@code courseTable} without creating a {@link Course}
+	 *
+	 * @param file        The file to read
+	 * @param courseTable Receives each row in the order that they appear in the sheet
+	 * @return The number of rows that were read
+	 * @throws Exception Thrown if the file could not be opened, repaired, or parsed
+	 */
+	public static int parseXLSXFile(File file, CourseTable courseTable) throws Exception {
+		CourseSheetHandler courseSheetHandler = new CourseSheetHandler(courseTable);
+		return XLSXReader.parseWorkbook(file, opcPackage -> XLSXReader.streamFirstSheet(opcPackage, courseSheetHandler));
+	}
+
+	/**
+	 * Same as {@link XLSXReader#parseXLSXFile(File, CourseTable)}, for a workbook that is already in memory, i.e. an upload
+	 *
+	 * @param bytes       The workbook to read
+	 * @param courseTable Receives each row in the order that they appear in the sheet
+	 * @return The number of rows that were read
+	 * @throws Exception Thrown if the workbook could not be opened, repaired, or parsed
+	 */
+	public static int parseXLSXBytes(byte[] bytes, CourseTable courseTable) throws Exception {
+		CourseSheetHandler courseSheetHandler = new CourseSheetHandler(courseTable);
+		return XLSXReader.parseWorkbook(bytes, opcPackage -> XLSXReader.streamFirstSheet(opcPackage, courseSheetHandler));
+	}
+
+	/**
+	 * Reads the first sheet from its first row. If {@code courseSheetHandler} already read part of the sheet before it failed,
+	 * the rows that it already handed over are not handed over again
+	 *
+	 * @param opcPackage         The opened workbook
+	 * @param courseSheetHandler Receives each row in the order that they appear in the sheet
+	 * @return The number of rows that were read
+	 * @throws Exception Thrown if the workbook could not be parsed
+	 */
+	private static int streamFirstSheet(OPCPackage opcPackage, CourseSheetHandler courseSheetHandler) throws Exception {
+		XSSFReader xssfReader = new XSSFReader(opcPackage);
+		ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(opcPackage);
+		StylesTable styles = xssfReader.getStylesTable();
+
+		Iterator<InputStream> sheets = xssfReader.getSheetsData();
+		if (!sheets.hasNext()) {
+			return 0;
+		}
+		courseSheetHandler.restart();
+		long startNanos = ConversionMetrics.startStage();
+		try (InputStream sheet = sheets.next()) {
+			XMLReader xmlReader = XLSXReader.newXMLReader();
+			xmlReader.setContentHandler(new XSSFSheetXMLHandler(styles, sharedStrings,
+					courseSheetHandler, new DataFormatter(), false));
+			xmlReader.parse(new InputSource(sheet));
+		}
+		ConversionMetrics.endStage(ConversionStage.PARSE, startNanos, courseSheetHandler.getRowCount());
+		return courseSheetHandler.getRowCount();
+	}
+
+	/**
+	 * Reads the sheets of the file in parallel, each sheet on its own task of {@code pool}.
+	 * <br>The shared strings and the styles of the workbook are loaded once, and only read by the tasks.
+	 *
+	 * @param file        The file to read
+	 * @param sheetFilter Selects the sheets to read by name, or null to read every sheet
+	 * @param pool        The pool to read the sheets on
+	 * @return The courses of each selected sheet by the name of the sheet, in the order that the sheets appear in the workbook
+	 * @throws Exception Thrown if the file could not be opened, repaired, or parsed
+	 */
+	public static Map<String, List<Course>> parseXLSXSheets(File file, Predicate<String> sheetFilter, ForkJoinPool pool) throws Exception {
+		return XLSXReader.parseWorkbook(file, opcPackage -> XLSXReader.parseSheets(opcPackage, sheetFilter, pool));
+	}
+
+	/**
+	 * Same as {@link XLSXReader#parseXLSXSheets(File, Predicate, ForkJoinPool)}, for a workbook that is already in memory
+	 *
+	 * @param bytes       The workbook to read
+	 * @param sheetFilter Selects the sheets to read by name, or null to read every sheet
+	 * @param pool        The pool to read the sheets on
+	 * @return The courses of each selected sheet by the name of the sheet, in the order that the sheets appear in the workbook
+	 * @throws Exception Thrown if the workbook could not be opened, repaired, or parsed
+	 */
+	public static Map<String, List<Course>> parseXLSXSheets(byte[] bytes, Predicate<String> sheetFilter, ForkJoinPool pool) throws Exception {
+		return XLSXReader.parseWorkbook(bytes, opcPackage -> XLSXReader.parseSheets(opcPackage, sheetFilter, pool));
+	}
+
+	/**
+	 * @param coursesBySheet The courses of each sheet, from {@link XLSXReader#parseXLSXSheets(File, Predicate, ForkJoinPool)}
+	 * @return The courses of every sheet in one list, sheet after sheet
+	 */
+	public static List<Course> mergeSheets(Map<String, List<Course>> coursesBySheet) {
+		int size = 0;
+		for (List<Course> courses : coursesBySheet.values()) {
+			size += courses.size();
+		}
+		List<Course> merged = new ArrayList<>(size);
+		for (List<Course> courses : coursesBySheet.values()) {
+			merged.addAll(courses);
+		}
+		return merged;
+	}
+
+	/**
+	 * @param opcPackage  The opened workbook
+	 * @param sheetFilter Selects the sheets to read by name, or null to read every sheet
+	 * @param pool        The pool to read the sheets on
+	 * @return The courses of each selected sheet by the name of the sheet, in workbook order
+	 * @throws Exception Thrown if the workbook could not be parsed
+	 */
+	private static Map<String, List<Course>> parseSheets(OPCPackage opcPackage, Predicate<String> sheetFilter, ForkJoinPool pool) throws Exception {
+		XSSFReader xssfReader = new XSSFReader(opcPackage);
+		ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(opcPackage);
+		StylesTable styles = xssfReader.getStylesTable();
+
+		// The sheets are found one after another, since the iterator is not thread safe, and then parsed at once
+		List<SheetTask> sheetTasks = new ArrayList<>();
+		try {
+			XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+			while (sheets.hasNext()) {
+				InputStream sheet = sheets.next();
+				String sheetName = sheets.getSheetName();
+				if (sheetFilter == null || sheetFilter.test(sheetName)) {
+					sheetTasks.add(new SheetTask(sheetName, sheet, sharedStrings, styles));
+				} else {
+					sheet.close();
+				}
+			}
+			pool.invoke(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					ForkJoinTask.invokeAll(sheetTasks);
+				}
+			});
+		} finally {
+			for (SheetTask sheetTask : sheetTasks) {
+				sheetTask.sheet.close();
+			}
+		}
+
+		Map<String, List<Course>> coursesBySheet = new LinkedHashMap<>();
+		for (SheetTask sheetTask : sheetTasks) {
+			coursesBySheet.put(sheetTask.sheetName, sheetTask.getRawResult());
+		}
+		return coursesBySheet;
+	}
+
+	/**
+	 * Parses one sheet into courses with its own SAX reader and handler, sharing the tables of the workbook with the other sheets
+	 */
+	// Never serialized, since a task only lives for one read of the workbook, so its stream and tables need not be serializable
+	@SuppressWarnings("serial")
+	private static class SheetTask extends RecursiveTask<List<Course>> {
+		private final String sheetName;
+		private final InputStream sheet;
+		private final ReadOnlySharedStringsTable sharedStrings;
+		private final StylesTable styles;
+
+		private SheetTask(String sheetName, InputStream sheet, ReadOnlySharedStringsTable sharedStrings, StylesTable styles) {
+			this.sheetName = sheetName;
+			this.sheet = sheet;
+			this.sharedStrings = sharedStrings;
+			this.styles = styles;
+		}
+
+		@Override
+		protected List<Course> compute() {
+			List<Course> courses = new ArrayList<>();
+			long startNanos = ConversionMetrics.startStage();
+			try {
+				XMLReader xmlReader = XLSXReader.newXMLReader();
+				// DataFormatter is not thread safe, so every sheet has its own
+				xmlReader.setContentHandler(new XSSFSheetXMLHandler(this.styles, this.sharedStrings,
+						new CourseSheetHandler(courses::add), new DataFormatter(), false));
+				xmlReader.parse(new InputSource(this.sheet));
+			} catch (SAXException | IOException e) {
+				// Still a malformed workbook once out of the task, so that it is repaired
+				throw new POIXMLException("Could not read the sheet " + this.sheetName, e);
+			} catch (Exception e) {
+				throw new IllegalStateException("Could not read the sheet " + this.sheetName, e);
+			}
+			ConversionMetrics.endStage(ConversionStage.PARSE, startNanos, courses.size());
+			return courses;
+		}
+	}
+
+	/**
+	 * The parts of a workbook never have a DTD, and the workbooks come from uploads, so DTDs and external entities are refused
+	 * to prevent reading local files or making requests through the entities of a crafted workbook (XXE)
+	 *
+	 * @return A namespace aware SAX reader that refuses DTDs and external entities
+	 * @throws Exception Thrown if the JDK could not create a SAX parser
+	 */
+	private static XMLReader newXMLReader() throws Exception {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		factory.setXIncludeAware(false);
+		factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+		factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+		factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+		factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+		return factory.newSAXParser().getXMLReader();
+	}
+
 	/**
 	 * 0 is term, 1 is course, 2 is format, 3 is meetings, 4 is location, 5 is instructor, and 6 is delivery
 	 *
@@ -115,7 +652,7 @@ public class XLSXReader {
 	 * @param column        The column of data from which to determine what the data is
 	 * @param cellValue     The value of the data
 	 */
-	private static void courseDataFactory(CourseBuilder courseBuilder, int column, String cellValue) {
+	static void courseDataFactory(CourseBuilder courseBuilder, int column, String cellValue) {
 		switch (column) {
 			case 0 -> courseBuilder.setTerm(cellValue);
 			case 1 -> courseBuilder.setCourse(cellValue);